@@ -0,0 +1,59 @@
+package com.example.loanapp;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Callback decoding from mpesaCallback for the three PayHero layouts.
+// mapBinding is the generic Map<String, Object> binding used before the decoder.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallbackDecodeBenchmark {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+
+    @Param({"checkoutRequestID", "userReference", "wrappedResponse"})
+    public String shape;
+
+    private final PayHeroCallbackDecoder decoder = new PayHeroCallbackDecoder();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] body;
+
+    @Setup
+    public void setup() {
+        String json = switch (shape) {
+            case "checkoutRequestID" -> "{\"CheckoutRequestID\":\"ws_CO_191220191020363925\","
+                    + "\"ExternalReference\":\"LON-C123456L9876543\",\"ResultCode\":0,"
+                    + "\"ResultDesc\":\"The service request is processed successfully.\","
+                    + "\"Amount\":100,\"MpesaReceiptNumber\":\"RDK7TF0WBN\"}";
+            case "userReference" -> "{\"status\":true,\"User_Reference\":\"LON-C123456L9876543\","
+                    + "\"Amount\":100,\"Phone\":\"254712345678\"}";
+            default -> "{\"forward_url\":\"\",\"status\":true,\"response\":{\"Amount\":100,"
+                    + "\"CheckoutRequestID\":\"ws_CO_191220191020363925\",\"ExternalReference\":\"LON-C123456L9876543\","
+                    + "\"MerchantRequestID\":\"3202-70921557-1\",\"MpesaReceiptNumber\":\"RDK7TF0WBN\","
+                    + "\"Phone\":\"+254712345678\",\"ResultCode\":0,"
+                    + "\"ResultDesc\":\"The service request is processed successfully.\",\"Status\":\"Success\"}}";
+        };
+        body = json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public PayHeroCallback streamingDecoder() {
+        return decoder.decode(body);
+    }
+
+    @Benchmark
+    public Map<String, Object> mapBinding() throws IOException {
+        return objectMapper.readValue(body, MAP_TYPE);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.loanapp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// JSON rendering of LoanApplication lists (/all): whole-list serialization
+// versus the SequenceWriter streaming used by the controller.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoanListJsonBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int size;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private List<LoanApplication> loans;
+
+    @Setup
+    public void setup() {
+        loans = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            LoanApplication loan = new LoanApplication();
+            loan.setId((long) i);
+            loan.setName("Applicant " + i);
+            loan.setPhone("2547" + (10000000 + i));
+            loan.setIdNumber(String.valueOf(30000000 + i));
+            loan.setLoanType("Personal");
+            loan.setLoanAmount(5000 + i % 50 * 100);
+            loan.setVerificationFee(150);
+            loan.setStatus(i % 3 == 0 ? "PAID" : "PENDING");
+            loan.setTrackingId("LON-C" + (100000 + i) + "L" + (1000000 + i));
+            loan.setCheckoutRequestID("ws_CO_" + i);
+            loan.setApplicationDate(new Date());
+            if (i % 4 == 0) {
+                loan.setMpesaMessage("RDK7TF0WBN Confirmed. Ksh150.00 sent to KOPESA for account "
+                        + loan.getTrackingId() + " on 12/3/25 at 10:15 AM. New M-PESA balance is Ksh1,234.00.");
+                loan.setMpesaMessageDate(new Date());
+            }
+            loans.add(loan);
+        }
+    }
+
+    @Benchmark
+    public byte[] wholeList() throws IOException {
+        return objectMapper.writeValueAsBytes(loans);
+    }
+
+    @Benchmark
+    public void streamedArray() throws IOException {
+        try (SequenceWriter writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .writeValuesAsArray(OutputStream.nullOutputStream())) {
+            for (LoanApplication loan : loans) {
+                writer.write(loan);
+            }
+        }
+    }
+}
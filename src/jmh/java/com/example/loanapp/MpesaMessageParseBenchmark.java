@@ -0,0 +1,37 @@
+package com.example.loanapp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-message cost of the reconciliation parser (MpesaReconciliation
+// parses every saved SMS once per run).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MpesaMessageParseBenchmark {
+
+    @Param({"sent", "received", "freeText"})
+    public String shape;
+
+    private String message;
+
+    @Setup
+    public void setup() {
+        message = switch (shape) {
+            case "sent" -> "SGH7XK2L9P Confirmed. Ksh1,500.00 sent to KOPESHA LTD for account LON-C123456L9876543"
+                    + " on 14/3/25 at 2:05 PM New M-PESA balance is Ksh2,345.50. Transaction cost, Ksh0.00.";
+            case "received" -> "TCE4ABC12X Confirmed. You have received Ksh150.00 from JOHN DOE 0712345678"
+                    + " on 1/12/24 at 12:30 AM New M-PESA balance is Ksh900.00.";
+            default -> "Nimelipa ile pesa ya verification jana jioni, tafadhali angalia na mnitumie loan yangu";
+        };
+    }
+
+    @Benchmark
+    public MpesaMessageParser.Receipt parse() {
+        return MpesaMessageParser.parse(message);
+    }
+}
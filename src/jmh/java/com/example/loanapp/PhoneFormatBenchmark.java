@@ -0,0 +1,23 @@
+package com.example.loanapp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// LoanApplicationController.formatPhone, for each accepted input form
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhoneFormatBenchmark {
+
+    @Param({"0712345678", "712345678", "254712345678", "+254 712 345 678"})
+    public String phone;
+
+    @Benchmark
+    public String formatPhone() {
+        return LoanApplicationController.formatPhone(phone);
+    }
+}
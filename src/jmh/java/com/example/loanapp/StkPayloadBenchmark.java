@@ -0,0 +1,26 @@
+package com.example.loanapp;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// PayHero STK payload building plus JSON serialization, as sent by PayHeroClient
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StkPayloadBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Benchmark
+    public byte[] buildAndSerialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(PayHeroClient.stkPayload(
+                150, "254712345678", "LON-C123456L9876543", "Jane Wanjiku",
+                1234, "https://kopesa.onrender.com/api/loans/mpesa/callback"));
+    }
+}
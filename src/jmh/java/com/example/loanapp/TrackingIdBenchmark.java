@@ -0,0 +1,43 @@
+package com.example.loanapp;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Tracking ID generation from applyLoan, single-threaded and contended.
+// legacyRandom is the shared java.util.Random scheme it replaced. The
+// generator runs on a clock 1000x faster than real time, or the cap of
+// SEQUENCE_SIZE ids per second would be all that is measured.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackingIdBenchmark {
+
+    private final long startMillis = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final TrackingIdGenerator generator = new TrackingIdGenerator(1,
+            () -> startMillis + (System.nanoTime() - startNanos) / 1000, millis -> Thread.onSpinWait());
+    private final Random random = new Random();
+
+    @Benchmark
+    public String generator() {
+        return generator.next();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String generatorContended() {
+        return generator.next();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String legacyRandomContended() {
+        return "LON-C" + (100000 + random.nextInt(900000))
+                + "L" + (1000000 + random.nextInt(9000000));
+    }
+}
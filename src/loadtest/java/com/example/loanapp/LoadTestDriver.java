@@ -0,0 +1,315 @@
+package com.example.loanapp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// =====================================================================
+// End-to-end load test: apply -> stk-push -> callback -> status
+//
+//   mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--concurrency=100 --flows=5000"
+//
+// Starts a PayHeroSimulator and the real application in-process (or
+// targets --app-url, which must then point its payhero.stk-url at the
+// simulator URL printed on startup). Each virtual user runs whole
+// flows back to back. The database is whatever SPRING_DATASOURCE_URL
+// points at, and PAYHERO_CHANNEL_ID must be set as for a normal run.
+//
+// Options (defaults in brackets):
+//   --concurrency [50]         virtual users
+//   --flows [1000]             total apply/stk-push/status flows
+//   --payhero-latency-ms [300] --payhero-jitter-ms [200]
+//   --payhero-error-rate [0.02]
+//   --callback-delay-ms [1000] --cancel-rate [0.1]
+//   --status-mode [poll]       poll | wait (long-poll endpoint)
+//   --poll-interval-ms [500]   --flow-timeout-ms [30000]
+//   --threads [platform]       platform | virtual request threads for the
+//                              in-process app (virtual needs Java 21)
+//   --app-url                  use a running app instead of starting one
+//   --app.<property>=<value>   extra property for the in-process app, e.g.
+//                              --app.payhero.bulkhead.max-concurrent-calls=500
+//   --report [target/loadtest-result.json]
+//
+// Prints throughput and p50/p99 latency per endpoint and writes the
+// same numbers as JSON to the report file. Recorded runs, with the
+// environment they were taken in, are in src/loadtest/results.
+// =====================================================================
+public class LoadTestDriver {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient;
+    private final Map<String, String> options;
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    private final AtomicInteger flowsCompleted = new AtomicInteger();
+    private final AtomicInteger flowsFailed = new AtomicInteger();
+
+    private String baseUrl;
+
+    // Latency samples for one endpoint
+    static final class EndpointStats {
+        private final List<Long> samplesNanos = Collections.synchronizedList(new ArrayList<>());
+        private final LongAdder errors = new LongAdder();
+
+        void record(long nanos, boolean ok) {
+            samplesNanos.add(nanos);
+            if (!ok) {
+                errors.increment();
+            }
+        }
+
+        Map<String, Object> summary(double elapsedSeconds) {
+            long[] sorted;
+            synchronized (samplesNanos) {
+                sorted = samplesNanos.stream().mapToLong(Long::longValue).sorted().toArray();
+            }
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", sorted.length);
+            summary.put("errors", errors.sum());
+            summary.put("throughputPerSecond", round(sorted.length / elapsedSeconds));
+            summary.put("p50Ms", round(percentile(sorted, 0.50) / 1e6));
+            summary.put("p99Ms", round(percentile(sorted, 0.99) / 1e6));
+            summary.put("maxMs", round((sorted.length == 0 ? 0 : sorted[sorted.length - 1]) / 1e6));
+            return summary;
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)];
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 100) / 100.0;
+        }
+    }
+
+    LoadTestDriver(Map<String, String> options) {
+        this.options = options;
+        int concurrency = intOption("concurrency", 50);
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(Math.max(4, concurrency / 4)))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        Map<String, Object> report = new LoadTestDriver(options).run();
+        System.exit(((Number) report.get("flowsFailed")).intValue() == 0 ? 0 : 1);
+    }
+
+    Map<String, Object> run() throws Exception {
+        try (PayHeroSimulator simulator = new PayHeroSimulator(
+                longOption("payhero-latency-ms", 300),
+                longOption("payhero-jitter-ms", 200),
+                doubleOption("payhero-error-rate", 0.02),
+                longOption("callback-delay-ms", 1000),
+                doubleOption("cancel-rate", 0.1))) {
+
+            System.out.println("PayHero simulator listening on " + simulator.stkUrl());
+
+            ConfigurableApplicationContext app = null;
+            if (options.containsKey("app-url")) {
+                baseUrl = options.get("app-url");
+            } else {
+                List<String> appArgs = new ArrayList<>(List.of("--server.port=0",
+                        "--payhero.stk-url=" + simulator.stkUrl(),
+                        "--spring.threads.virtual.enabled=" + "virtual".equals(threadsMode())));
+                if (!options.containsKey("app.loan.tracking-id.node-id") && System.getenv("LOAN_TRACKING_ID_NODE_ID") == null) {
+                    appArgs.add("--loan.tracking-id.node-id=0");
+                }
+                options.forEach((name, value) -> {
+                    if (name.startsWith("app.")) {
+                        appArgs.add("--" + name.substring("app.".length()) + "=" + value);
+                    }
+                });
+                app = new SpringApplicationBuilder(LoanAppApplication.class).run(appArgs.toArray(String[]::new));
+                baseUrl = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+            }
+            simulator.setCallbackUrl(baseUrl + "/api/loans/mpesa/callback");
+
+            try {
+                Map<String, Object> report = drive();
+                report.put("callbacksDelivered", simulator.callbacksSent());
+                report.put("callbacksFailed", simulator.callbacksFailed());
+                print(report);
+                writeReport(report);
+                return report;
+            } finally {
+                if (app != null) {
+                    app.close();
+                }
+            }
+        }
+    }
+
+    private Map<String, Object> drive() throws InterruptedException {
+        int concurrency = intOption("concurrency", 50);
+        int flows = intOption("flows", 1000);
+        AtomicInteger remaining = new AtomicInteger(flows);
+
+        ExecutorService users = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            users.submit(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    long flowStart = System.nanoTime();
+                    boolean ok = runFlow();
+                    stats.computeIfAbsent("flow (end-to-end)", k -> new EndpointStats())
+                            .record(System.nanoTime() - flowStart, ok);
+                    (ok ? flowsCompleted : flowsFailed).incrementAndGet();
+                }
+            });
+        }
+        users.shutdown();
+        users.awaitTermination(1, TimeUnit.DAYS);
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("threads", options.containsKey("app-url") ? "external" : threadsMode());
+        report.put("javaVersion", Runtime.version().feature());
+        report.put("concurrency", concurrency);
+        report.put("flows", flows);
+        report.put("flowsCompleted", flowsCompleted.get());
+        report.put("flowsFailed", flowsFailed.get());
+        report.put("elapsedSeconds", EndpointStats.round(elapsedSeconds));
+        Map<String, Object> endpoints = new TreeMap<>();
+        stats.forEach((endpoint, s) -> endpoints.put(endpoint, s.summary(elapsedSeconds)));
+        report.put("endpoints", endpoints);
+        return report;
+    }
+
+    // One customer: apply, trigger the STK push, wait for the callback to land
+    private boolean runFlow() {
+        try {
+            String phone = "07" + (10_000_000 + ThreadLocalRandom.current().nextInt(90_000_000));
+
+            JsonNode loan = call("POST /apply", "POST", "/api/loans/apply", Map.of(
+                    "name", "Load Test",
+                    "phone", phone,
+                    "idNumber", String.valueOf(20_000_000 + ThreadLocalRandom.current().nextInt(20_000_000)),
+                    "loanType", "Personal",
+                    "loanAmount", 5000
+            ));
+            if (loan == null || !loan.hasNonNull("trackingId")) {
+                return false;
+            }
+
+            JsonNode stk = call("POST /stk-push", "POST", "/api/loans/stk-push", Map.of(
+                    "trackingId", loan.get("trackingId").asText(),
+                    "phone", phone,
+                    "amount", 150,
+                    "loanAmount", 5000,
+                    "verificationFee", 150
+            ));
+            if (stk == null || !stk.hasNonNull("checkoutRequestID")) {
+                return false;
+            }
+
+            return awaitSettled(stk.get("checkoutRequestID").asText());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private boolean awaitSettled(String checkoutRequestID) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(longOption("flow-timeout-ms", 30_000));
+        boolean longPoll = "wait".equals(options.getOrDefault("status-mode", "poll"));
+
+        while (System.nanoTime() < deadline) {
+            JsonNode status = longPoll
+                    ? call("GET /mpesa/status/{id}/wait", "GET",
+                    "/api/loans/mpesa/status/" + checkoutRequestID + "/wait?timeoutSeconds=25", null)
+                    : call("GET /mpesa/status/{id}", "GET", "/api/loans/mpesa/status/" + checkoutRequestID, null);
+
+            String value = status == null ? "" : status.path("status").asText();
+            if (value.equals("PAID") || value.equals("CANCELLED") || value.equals("FAILED")) {
+                return true;
+            }
+            if (!longPoll) {
+                Thread.sleep(longOption("poll-interval-ms", 500));
+            }
+        }
+        return false;
+    }
+
+    // Sends one request and records its latency under the endpoint label
+    private JsonNode call(String endpoint, String method, String path, Object body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json");
+        request = body == null
+                ? request.GET()
+                : request.method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response;
+        try {
+            response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            stats.computeIfAbsent(endpoint, k -> new EndpointStats()).record(System.nanoTime() - start, false);
+            return null;
+        }
+        boolean ok = response.statusCode() < 400;
+        stats.computeIfAbsent(endpoint, k -> new EndpointStats()).record(System.nanoTime() - start, ok);
+        return ok ? objectMapper.readTree(response.body()) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void print(Map<String, Object> report) {
+        System.out.printf("%nflows: %s completed, %s failed in %ss (concurrency %s)%n",
+                report.get("flowsCompleted"), report.get("flowsFailed"),
+                report.get("elapsedSeconds"), report.get("concurrency"));
+        System.out.printf("%-34s %9s %7s %10s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms");
+        ((Map<String, Map<String, Object>>) report.get("endpoints")).forEach((endpoint, s) ->
+                System.out.printf("%-34s %9s %7s %10s %9s %9s %9s%n", endpoint,
+                        s.get("requests"), s.get("errors"), s.get("throughputPerSecond"),
+                        s.get("p50Ms"), s.get("p99Ms"), s.get("maxMs")));
+    }
+
+    private void writeReport(Map<String, Object> report) throws IOException {
+        Path path = Path.of(options.getOrDefault("report", "target/loadtest-result.json"));
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(path.toFile(), report);
+        System.out.println("Report written to " + path.toAbsolutePath());
+    }
+
+    private String threadsMode() {
+        return options.getOrDefault("threads", "platform");
+    }
+
+    private int intOption(String name, int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    private long longOption(String name, long defaultValue) {
+        return options.containsKey(name) ? Long.parseLong(options.get(name)) : defaultValue;
+    }
+
+    private double doubleOption(String name, double defaultValue) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.loanapp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// =====================================================================
+// Local stand-in for PayHero's STK push API
+//
+// POST /api/v2/payments answers after latencyMs (+/- jitterMs) with a
+// CheckoutRequestID, or with an error for errorRate of the requests.
+// Each accepted push is followed, callbackDelayMs later, by a callback
+// to callbackUrl in one of PayHero's three payload shapes (rotating),
+// cancelled for cancelRate of them. The callback_url in the request is
+// ignored on purpose, so a misconfigured .env never reaches production.
+// =====================================================================
+public class PayHeroSimulator implements AutoCloseable {
+
+    private static final String[] SHAPES = {"checkoutRequestID", "userReference", "wrappedResponse"};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final ScheduledExecutorService callbackScheduler = Executors.newScheduledThreadPool(4);
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong callbacksSent = new AtomicLong();
+    private final AtomicLong callbacksFailed = new AtomicLong();
+
+    private final HttpServer server;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double errorRate;
+    private final long callbackDelayMs;
+    private final double cancelRate;
+
+    private volatile String callbackUrl;
+
+    public PayHeroSimulator(long latencyMs, long jitterMs, double errorRate,
+                            long callbackDelayMs, double cancelRate) throws IOException {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.errorRate = errorRate;
+        this.callbackDelayMs = callbackDelayMs;
+        this.cancelRate = cancelRate;
+
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 512);
+        this.server.createContext("/api/v2/payments", this::handleStkPush);
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.start();
+    }
+
+    public String stkUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/api/v2/payments";
+    }
+
+    public void setCallbackUrl(String callbackUrl) {
+        this.callbackUrl = callbackUrl;
+    }
+
+    public long callbacksSent() {
+        return callbacksSent.get();
+    }
+
+    public long callbacksFailed() {
+        return callbacksFailed.get();
+    }
+
+    private void handleStkPush(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            sleep(latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(-jitterMs, jitterMs + 1) : 0));
+
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                // Half HTTP errors, half PayHero-style "success": false bodies
+                if (ThreadLocalRandom.current().nextBoolean()) {
+                    respond(exchange, 500, Map.of("error", "Simulated PayHero outage"));
+                } else {
+                    respond(exchange, 200, Map.of("success", false, "message", "Simulated PayHero rejection"));
+                }
+                return;
+            }
+
+            long n = sequence.incrementAndGet();
+            String checkoutRequestID = "ws_CO_SIM" + n;
+            String externalReference = request.path("external_reference").asText();
+            int amount = request.path("amount").asInt();
+
+            respond(exchange, 201, Map.of(
+                    "success", true,
+                    "status", "QUEUED",
+                    "reference", "SIM-" + n,
+                    "CheckoutRequestID", checkoutRequestID
+            ));
+
+            boolean cancelled = ThreadLocalRandom.current().nextDouble() < cancelRate;
+            String shape = SHAPES[(int) (n % SHAPES.length)];
+            callbackScheduler.schedule(
+                    () -> sendCallback(callbackPayload(shape, checkoutRequestID, externalReference, amount, cancelled)),
+                    callbackDelayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    static Map<String, Object> callbackPayload(String shape, String checkoutRequestID, String externalReference,
+                                               int amount, boolean cancelled) {
+        int resultCode = cancelled ? PayHeroCallback.RESULT_CANCELLED : PayHeroCallback.RESULT_SUCCESS;
+        String resultDesc = cancelled ? "Request cancelled by user"
+                : "The service request is processed successfully.";
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        switch (shape) {
+            case "userReference" -> {
+                payload.put("status", !cancelled);
+                payload.put("User_Reference", externalReference);
+                payload.put("Amount", amount);
+            }
+            case "wrappedResponse" -> {
+                Map<String, Object> response = new LinkedHashMap<>();
+                response.put("Amount", amount);
+                response.put("CheckoutRequestID", checkoutRequestID);
+                response.put("ExternalReference", externalReference);
+                response.put("MpesaReceiptNumber", cancelled ? null : "SIM" + checkoutRequestID.hashCode());
+                response.put("ResultCode", resultCode);
+                response.put("ResultDesc", resultDesc);
+                response.put("Status", cancelled ? "Failed" : "Success");
+                payload.put("forward_url", "");
+                payload.put("status", !cancelled);
+                payload.put("response", response);
+            }
+            default -> {
+                payload.put("CheckoutRequestID", checkoutRequestID);
+                payload.put("ExternalReference", externalReference);
+                payload.put("ResultCode", resultCode);
+                payload.put("ResultDesc", resultDesc);
+                payload.put("Amount", amount);
+                payload.put("MpesaReceiptNumber", cancelled ? null : "SIM" + checkoutRequestID.hashCode());
+            }
+        }
+        return payload;
+    }
+
+    private void sendCallback(Map<String, Object> payload) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(callbackUrl))
+                    .timeout(Duration.ofSeconds(10))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(payload)))
+                    .build();
+            httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error != null || response.statusCode() >= 400) {
+                            callbacksFailed.incrementAndGet();
+                        } else {
+                            callbacksSent.incrementAndGet();
+                        }
+                    });
+        } catch (IOException e) {
+            callbacksFailed.incrementAndGet();
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, Map<String, Object> body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        callbackScheduler.shutdownNow();
+    }
+}
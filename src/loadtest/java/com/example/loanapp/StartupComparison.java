@@ -0,0 +1,176 @@
+package com.example.loanapp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+
+// =====================================================================
+// Startup time and memory: plain jar vs AOT vs AOT + CDS vs native
+//
+//   mvn -Pcds package
+//   mvn -Ploadtest test-compile exec:exec \
+//       -Dloadtest.main=com.example.loanapp.StartupComparison \
+//       -Dloadtest.args="--runs=5"
+//
+// Starts the application --runs times per variant and records the time
+// until /actuator/health answers (any status: without a database it is
+// DOWN, but the server is up) and the process RSS at that moment. The
+// JVM variants run the thin jar from target/cds; the native variant
+// only runs when --native points to an executable (mvn -Pnative
+// native:compile). Application arguments go in --app-args, e.g. the
+// database settings; the default runs the database-less cds-training
+// profile, which leaves out the connection pool warm-up.
+//
+// Options (defaults in brackets):
+//   --runs [3]   --port [18080]   --timeout-seconds [120]
+//   --dir [target/cds]   --archive [loan-app.jsa]   --native []
+//   --app-args [--spring.profiles.active=cds-training]
+//   --report [target/startup-comparison.json]
+// =====================================================================
+public class StartupComparison {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        int runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+        int port = Integer.parseInt(options.getOrDefault("port", "18080"));
+        long timeoutSeconds = Long.parseLong(options.getOrDefault("timeout-seconds", "120"));
+        Path dir = Path.of(options.getOrDefault("dir", "target/cds"));
+        String archive = options.getOrDefault("archive", "loan-app.jsa");
+        List<String> appArgs = new ArrayList<>(List.of(
+                options.getOrDefault("app-args", "--spring.profiles.active=cds-training").split("\\s+")));
+        appArgs.add("--server.port=" + port);
+
+        String jar;
+        try (var files = Files.list(dir)) {
+            jar = files.map(p -> p.getFileName().toString()).filter(n -> n.endsWith("-cds.jar")).findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No thin jar in " + dir + ", run mvn -Pcds package"));
+        }
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        variants.put("jar", List.of(java, "-jar", jar));
+        variants.put("aot", List.of(java, "-Dspring.aot.enabled=true", "-jar", jar));
+        if (Files.exists(dir.resolve(archive))) {
+            variants.put("aot+cds", List.of(java, "-XX:SharedArchiveFile=" + archive, "-Xlog:cds=error",
+                    "-Dspring.aot.enabled=true", "-jar", jar));
+        } else {
+            System.out.println("No " + dir.resolve(archive) + ", skipping the CDS variant");
+        }
+        if (options.containsKey("native")) {
+            variants.put("native", List.of(Path.of(options.get("native")).toAbsolutePath().toString()));
+        }
+
+        HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+        Map<String, Object> results = new LinkedHashMap<>();
+        System.out.printf("%-10s %12s %12s %12s%n", "variant", "ready p50 ms", "ready max ms", "rss p50 MB");
+        for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+            List<Long> readyMs = new ArrayList<>();
+            List<Long> rssKb = new ArrayList<>();
+            for (int i = 0; i < runs; i++) {
+                List<String> command = new ArrayList<>(variant.getValue());
+                command.addAll(appArgs);
+                long[] sample = start(command, dir, http, port, timeoutSeconds);
+                readyMs.add(sample[0]);
+                rssKb.add(sample[1]);
+            }
+            Collections.sort(readyMs);
+            Collections.sort(rssKb);
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("readyMs", readyMs);
+            summary.put("rssKb", rssKb);
+            summary.put("readyP50Ms", readyMs.get(readyMs.size() / 2));
+            summary.put("rssP50Kb", rssKb.get(rssKb.size() / 2));
+            results.put(variant.getKey(), summary);
+            System.out.printf("%-10s %12d %12d %12d%n", variant.getKey(), readyMs.get(readyMs.size() / 2),
+                    readyMs.get(readyMs.size() - 1), rssKb.get(rssKb.size() / 2) / 1024);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("javaVersion", Runtime.version().toString());
+        report.put("processors", Runtime.getRuntime().availableProcessors());
+        report.put("runs", runs);
+        report.put("appArgs", appArgs);
+        report.put("variants", results);
+        Path out = Path.of(options.getOrDefault("report", "target/startup-comparison.json"));
+        Files.createDirectories(out.toAbsolutePath().getParent());
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(out.toFile(), report);
+        System.out.println("Report written to " + out);
+    }
+
+    // { ms until /actuator/health answered, RSS in kB at that point }
+    private static long[] start(List<String> command, Path dir, HttpClient http, int port, long timeoutSeconds)
+            throws Exception {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).directory(dir.toFile()).redirectErrorStream(true).start();
+        // Drain the log so the child never blocks on a full pipe
+        StringBuilder tail = new StringBuilder();
+        Thread drain = new Thread(() -> {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    synchronized (tail) {
+                        tail.append(line).append('\n');
+                        if (tail.length() > 8192) {
+                            tail.delete(0, tail.length() - 8192);
+                        }
+                    }
+                }
+            } catch (Exception ignored) {
+            }
+        }, "startup-log");
+        drain.setDaemon(true);
+        drain.start();
+
+        HttpRequest health = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health"))
+                .timeout(Duration.ofSeconds(2)).build();
+        long deadline = start + Duration.ofSeconds(timeoutSeconds).toNanos();
+        try {
+            while (System.nanoTime() < deadline) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Exited with " + process.exitValue() + " before it was ready:\n"
+                            + tail);
+                }
+                try {
+                    http.send(health, HttpResponse.BodyHandlers.discarding());
+                    long readyMs = (System.nanoTime() - start) / 1_000_000;
+                    return new long[] { readyMs, rssKb(process.pid()) };
+                } catch (java.io.IOException notYet) {
+                    Thread.sleep(20);
+                }
+            }
+            throw new IllegalStateException("Not ready after " + timeoutSeconds + " s: " + command);
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static long rssKb(long pid) throws Exception {
+        Path status = Path.of("/proc", String.valueOf(pid), "status");
+        if (!Files.exists(status)) {
+            return -1;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", ""));
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.loanapp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+// =====================================================================
+// Platform vs virtual request threads under blocking PayHero calls
+//
+//   mvn -Pjava21,loadtest test-compile exec:exec \
+//       -Dloadtest.main=com.example.loanapp.ThreadModeComparison \
+//       -Dloadtest.args="--levels=100,200,400,800,1600"
+//
+// Runs LoadTestDriver in-process once per thread mode and concurrency
+// level, with a slow simulated PayHero so every STK push holds its
+// request thread for the whole round trip. The bulkhead, PayHero pool
+// and global rate limit are raised to the level under test, so what is
+// measured is the request threading, not the admission control.
+//
+// A level counts as sustained when every flow completes and the STK
+// push p99 stays within --max-overhead-ms of the simulated latency.
+// Without Java 21 only the platform mode runs. No comparison has been
+// recorded yet, see src/loadtest/results/README.md.
+//
+// Options (defaults in brackets), anything else goes to LoadTestDriver:
+//   --levels [100,200,400,800]    concurrent virtual users per run
+//   --flows-per-user [3]
+//   --payhero-latency-ms [2000]   --payhero-jitter-ms [200]
+//   --max-overhead-ms [1000]
+//   --report [target/thread-mode-comparison.json]
+// =====================================================================
+public class ThreadModeComparison {
+
+    private static final String STK_PUSH = "POST /stk-push";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+
+        int[] levels = Arrays.stream(options.getOrDefault("levels", "100,200,400,800").split(","))
+                .map(String::trim).mapToInt(Integer::parseInt).toArray();
+        int flowsPerUser = Integer.parseInt(options.getOrDefault("flows-per-user", "3"));
+        long latencyMs = Long.parseLong(options.getOrDefault("payhero-latency-ms", "2000"));
+        long jitterMs = Long.parseLong(options.getOrDefault("payhero-jitter-ms", "200"));
+        long maxOverheadMs = Long.parseLong(options.getOrDefault("max-overhead-ms", "1000"));
+
+        List<String> modes = Runtime.version().feature() >= 21
+                ? List.of("platform", "virtual") : List.of("platform");
+        if (modes.size() == 1) {
+            System.out.println("Java " + Runtime.version().feature() + ": virtual threads need Java 21 (-Pjava21),"
+                    + " running the platform mode only");
+        }
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (String mode : modes) {
+            List<Map<String, Object>> runs = new ArrayList<>();
+            int sustained = 0;
+            for (int level : levels) {
+                Map<String, String> run = new HashMap<>(options);
+                run.keySet().removeAll(List.of("levels", "flows-per-user", "max-overhead-ms"));
+                run.put("threads", mode);
+                run.put("concurrency", String.valueOf(level));
+                run.put("flows", String.valueOf(level * flowsPerUser));
+                run.put("payhero-latency-ms", String.valueOf(latencyMs));
+                run.put("payhero-jitter-ms", String.valueOf(jitterMs));
+                run.put("status-mode", options.getOrDefault("status-mode", "wait"));
+                run.put("report", "target/loadtest-" + mode + "-" + level + ".json");
+                run.putIfAbsent("app.payhero.bulkhead.max-concurrent-calls", String.valueOf(level * 2));
+                run.putIfAbsent("app.payhero.http.max-connections", String.valueOf(level * 2));
+                run.putIfAbsent("app.stk-push.rate-limit.global.capacity", "10000");
+                run.putIfAbsent("app.stk-push.rate-limit.global.refill-per-second", "100000");
+
+                Map<String, Object> report = new LoadTestDriver(run).run();
+                Map<String, Object> summary = summarize(level, report);
+                boolean ok = ((Number) report.get("flowsFailed")).intValue() == 0
+                        && ((Number) summary.get("stkPushP99Ms")).doubleValue() <= latencyMs + jitterMs + maxOverheadMs;
+                summary.put("sustained", ok);
+                if (ok) {
+                    sustained = Math.max(sustained, level);
+                }
+                runs.add(summary);
+            }
+            Map<String, Object> modeResult = new LinkedHashMap<>();
+            modeResult.put("sustainedConcurrentStkPushes", sustained);
+            modeResult.put("runs", runs);
+            results.put(mode, modeResult);
+        }
+
+        print(results);
+        Path path = Path.of(options.getOrDefault("report", "target/thread-mode-comparison.json"));
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(path.toFile(), results);
+        System.out.println("Report written to " + path.toAbsolutePath());
+        System.exit(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> summarize(int level, Map<String, Object> report) {
+        Map<String, Object> stk = (Map<String, Object>) ((Map<String, Object>) report.get("endpoints"))
+                .getOrDefault(STK_PUSH, Map.of("throughputPerSecond", 0, "p99Ms", Double.MAX_VALUE, "errors", 0));
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("concurrency", level);
+        summary.put("flowsCompleted", report.get("flowsCompleted"));
+        summary.put("flowsFailed", report.get("flowsFailed"));
+        summary.put("stkPushPerSecond", stk.get("throughputPerSecond"));
+        summary.put("stkPushP99Ms", stk.get("p99Ms"));
+        summary.put("stkPushErrors", stk.get("errors"));
+        return summary;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void print(Map<String, Object> results) {
+        System.out.printf("%n%-9s %11s %9s %7s %12s %12s %10s%n",
+                "threads", "concurrency", "completed", "failed", "stk-push/s", "stk p99 ms", "sustained");
+        results.forEach((mode, value) -> {
+            Map<String, Object> modeResult = (Map<String, Object>) value;
+            for (Map<String, Object> run : (List<Map<String, Object>>) modeResult.get("runs")) {
+                System.out.printf("%-9s %11s %9s %7s %12s %12s %10s%n", mode, run.get("concurrency"),
+                        run.get("flowsCompleted"), run.get("flowsFailed"), run.get("stkPushPerSecond"),
+                        run.get("stkPushP99Ms"), run.get("sustained"));
+            }
+            System.out.printf("%-9s sustains %s concurrent STK pushes%n", mode,
+                    modeResult.get("sustainedConcurrentStkPushes"));
+        });
+    }
+}
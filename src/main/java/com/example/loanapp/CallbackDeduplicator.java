@@ -0,0 +1,72 @@
+package com.example.loanapp;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// =====================================================================
+// PayHero callback de-duplication
+//
+// PayHero re-sends callbacks. A callback is identified by its reference
+// (CheckoutRequestID / User_Reference) plus result code; once one has
+// been applied, repeats are acknowledged without touching the database.
+// The seen-set is bounded and time-limited, so after a restart or an
+// eviction the database has the final word: a loan already in the
+// target status is treated as a duplicate and not written again.
+//
+// Metrics: payhero.callback.deliveries{outcome=first|duplicate}
+// =====================================================================
+@Component
+public class CallbackDeduplicator {
+
+    private final Cache<String, Boolean> seen;
+    private final Counter first;
+    private final Counter duplicates;
+
+    public CallbackDeduplicator(MeterRegistry meterRegistry,
+                                @Value("${payhero.callback.dedup.max-size}") long maxSize,
+                                @Value("${payhero.callback.dedup.ttl-minutes}") long ttlMinutes) {
+        this.seen = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+        this.first = Counter.builder("payhero.callback.deliveries")
+                .tag("outcome", "first")
+                .description("Callbacks applied for the first time")
+                .register(meterRegistry);
+        this.duplicates = Counter.builder("payhero.callback.deliveries")
+                .tag("outcome", "duplicate")
+                .description("Repeated callbacks acknowledged without a write")
+                .register(meterRegistry);
+    }
+
+    // True (and counted as a duplicate) if this exact callback was already applied
+    public boolean alreadySeen(PayHeroCallback callback) {
+        if (seen.getIfPresent(key(callback)) == null) {
+            return false;
+        }
+        duplicates.increment();
+        return true;
+    }
+
+    // The callback changed the loan
+    public void recordFirst(PayHeroCallback callback) {
+        seen.put(key(callback), Boolean.TRUE);
+        first.increment();
+    }
+
+    // The database showed the loan already had this status
+    public void recordDuplicate(PayHeroCallback callback) {
+        seen.put(key(callback), Boolean.TRUE);
+        duplicates.increment();
+    }
+
+    private static String key(PayHeroCallback callback) {
+        return callback.reference() + '|' + callback.resultCode();
+    }
+}
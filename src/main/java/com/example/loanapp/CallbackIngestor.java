@@ -0,0 +1,339 @@
+package com.example.loanapp;
+
+import io.micrometer.core.instrument.Counter;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// =====================================================================
+// Asynchronous callback ingestion (payhero.callback.mode=async)
+//
+// mpesaCallback validates the payload and hands it over here, PayHero
+// gets its 200 straight away. A single worker drains the bounded queue
+// and writes status changes as JDBC batches, one transaction per batch.
+// The batch first locks the loans it touches (one SELECT ... FOR UPDATE)
+// so the old statuses are known and LoanStats can be moved after commit;
+// the locked loans are evicted from the second-level cache at that point.
+// Only then is a callback that changed a loan recorded as seen and its
+// status published under the loan's CheckoutRequestID: one that matched
+// no loan publishes nothing, and one dropped after a failed write stays
+// unrecorded, so PayHero's retry is applied.
+// When the queue is full submit() fails and the controller answers 503,
+// so PayHero retries later instead of us buffering without limit.
+//
+// Metrics: payhero.callback.queue.depth, payhero.callback.apply.lag,
+//          payhero.callback.batch.size, payhero.callback.rejected
+// =====================================================================
+@Component
+public class CallbackIngestor implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(CallbackIngestor.class);
+
+    // Lookup order matches the synchronous path: CheckoutRequestID, then trackingId.
+    // Rows already in the target status are skipped, so duplicates cost no write.
+    private static final String UPDATE_STATUS_SQL =
+            "UPDATE loan_application SET status = ?"
+                    + " WHERE (checkout_requestid = ? OR tracking_id = ?) AND status IS DISTINCT FROM ?";
+
+    private static final String LOCK_SQL =
+            "SELECT id, checkout_requestid, tracking_id, status, loan_type, application_date,"
+                    + " loan_amount, verification_fee FROM loan_application"
+                    + " WHERE checkout_requestid = ANY(?) OR tracking_id = ANY(?) FOR UPDATE";
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final long enqueueTimeoutMs;
+    private final BlockingQueue<Pending> queue;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LoanStats loanStats;
+    private final Cache loanCache;
+    private final CallbackDeduplicator callbackDeduplicator;
+    private final PaymentStatusPublisher paymentStatusPublisher;
+
+    private final Timer applyLag;
+    private final DistributionSummary batchSizes;
+    private final Counter rejected;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    private record Pending(PayHeroCallback callback, long enqueuedAtNanos) {
+    }
+
+    // Loans locked by a batch: current row and CheckoutRequestID per id, ids per lookup column
+    private record Locked(Map<Long, LoanStats.Row> rows, Map<Long, String> checkoutIds,
+                          Map<String, Long> byCheckout, Map<String, Long> byTracking) {
+    }
+
+    private record StatusChange(LoanStats.Row before, LoanStats.Row after) {
+    }
+
+    // A callback that matched a loan, and whether it changed the status
+    private record Outcome(PayHeroCallback callback, String checkoutRequestID, boolean changed) {
+    }
+
+    public CallbackIngestor(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            LoanStats loanStats,
+                            EntityManagerFactory entityManagerFactory,
+                            CallbackDeduplicator callbackDeduplicator,
+                            PaymentStatusPublisher paymentStatusPublisher,
+                            MeterRegistry meterRegistry,
+                            @Value("${payhero.callback.mode}") String mode,
+                            @Value("${payhero.callback.queue-capacity}") int queueCapacity,
+                            @Value("${payhero.callback.batch-size}") int batchSize,
+                            @Value("${payhero.callback.enqueue-timeout-ms}") long enqueueTimeoutMs) {
+        this.enabled = "async".equalsIgnoreCase(mode);
+        this.batchSize = batchSize;
+        this.enqueueTimeoutMs = enqueueTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.loanStats = loanStats;
+        this.loanCache = entityManagerFactory.getCache();
+        this.callbackDeduplicator = callbackDeduplicator;
+        this.paymentStatusPublisher = paymentStatusPublisher;
+
+        Gauge.builder("payhero.callback.queue.depth", queue, BlockingQueue::size)
+                .description("Callbacks acknowledged but not yet written")
+                .register(meterRegistry);
+        this.applyLag = Timer.builder("payhero.callback.apply.lag")
+                .description("Time from callback acknowledgement to committed status write")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("payhero.callback.batch.size")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("payhero.callback.rejected")
+                .description("Callbacks refused because the queue was full")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Queues a callback for the worker. Returns false when the queue stays
+    // full for longer than enqueue-timeout-ms.
+    public boolean submit(PayHeroCallback callback) throws InterruptedException {
+        boolean accepted = queue.offer(new Pending(callback, System.nanoTime()),
+                enqueueTimeoutMs, TimeUnit.MILLISECONDS);
+        if (!accepted) {
+            rejected.increment();
+        }
+        return accepted;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "payhero-callback-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (worker == null) {
+            return;
+        }
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+
+        // Write whatever was acknowledged before shutdown
+        List<Pending> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            apply(remaining);
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                apply(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Callback writer failed on a batch of {}", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void apply(List<Pending> batch) {
+        batchSizes.record(batch.size());
+        try {
+            write(batch);
+        } catch (Exception e) {
+            // One bad row must not drop the whole batch: retry item by item
+            log.warn("Batched callback write failed, retrying individually: {}", e.getMessage());
+            for (Pending pending : batch) {
+                applyOne(pending);
+            }
+            return;
+        }
+        recordLag(batch);
+    }
+
+    private void applyOne(Pending pending) {
+        try {
+            write(List.of(pending));
+            applyLag.record(System.nanoTime() - pending.enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            // Not recorded as seen: PayHero's retry gets another chance
+            log.error("Dropping PayHero callback {}", pending.callback().reference(), e);
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        List<StatusChange> changes = new ArrayList<>();
+        List<Outcome> outcomes = new ArrayList<>();
+        List<Long> lockedIds = new ArrayList<>();
+        int[] counts = transactionTemplate.execute(tx -> {
+            Locked locked = lock(batch);
+            lockedIds.addAll(locked.rows().keySet());
+            int[] updated = jdbcTemplate.batchUpdate(
+                    UPDATE_STATUS_SQL, batch, batch.size(), (ps, pending) -> {
+                        PayHeroCallback callback = pending.callback();
+                        ps.setString(1, callback.loanStatus());
+                        ps.setString(2, callback.reference());
+                        ps.setString(3, callback.reference());
+                        ps.setString(4, callback.loanStatus());
+                    })[0];
+            transitions(batch, locked, changes, outcomes);
+            return updated;
+        });
+        lockedIds.forEach(id -> loanCache.evict(LoanApplication.class, id));
+        reportUnmatched(batch, counts);
+        for (StatusChange change : changes) {
+            loanStats.changed(change.before(), change.after());
+        }
+        for (Outcome outcome : outcomes) {
+            if (outcome.changed()) {
+                callbackDeduplicator.recordFirst(outcome.callback());
+                paymentStatusPublisher.publish(outcome.checkoutRequestID(), outcome.callback());
+            } else {
+                callbackDeduplicator.recordDuplicate(outcome.callback());
+            }
+        }
+    }
+
+    private Locked lock(List<Pending> batch) {
+        String[] references = batch.stream().map(p -> p.callback().reference()).distinct().toArray(String[]::new);
+        Locked locked = new Locked(new HashMap<>(), new HashMap<>(), new HashMap<>(), new HashMap<>());
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(LOCK_SQL);
+            ps.setArray(1, con.createArrayOf("varchar", references));
+            ps.setArray(2, con.createArrayOf("varchar", references));
+            return ps;
+        }, rs -> {
+            long id = rs.getLong("id");
+            locked.rows().put(id, new LoanStats.Row(rs.getString("status"), rs.getString("loan_type"),
+                    LoanStats.Row.day(rs.getTimestamp("application_date")),
+                    rs.getLong("loan_amount"), rs.getLong("verification_fee")));
+            if (rs.getString("checkout_requestid") != null) {
+                locked.checkoutIds().put(id, rs.getString("checkout_requestid"));
+                locked.byCheckout().put(rs.getString("checkout_requestid"), id);
+            }
+            if (rs.getString("tracking_id") != null) {
+                locked.byTracking().put(rs.getString("tracking_id"), id);
+            }
+        });
+        return locked;
+    }
+
+    // Replays the batch against the locked rows, in order, the way the
+    // UPDATE statements applied it. Callbacks matching no loan have no outcome.
+    private static void transitions(List<Pending> batch, Locked locked,
+                                    List<StatusChange> changes, List<Outcome> outcomes) {
+        for (Pending pending : batch) {
+            PayHeroCallback callback = pending.callback();
+            String reference = callback.reference();
+            String status = callback.loanStatus();
+            Set<Long> ids = new LinkedHashSet<>(Arrays.asList(
+                    locked.byCheckout().get(reference), locked.byTracking().get(reference)));
+            ids.remove(null);
+            if (ids.isEmpty()) {
+                continue;
+            }
+            boolean changed = false;
+            for (Long id : ids) {
+                LoanStats.Row before = locked.rows().get(id);
+                if (Objects.equals(before.status(), status)) {
+                    continue;
+                }
+                LoanStats.Row after = new LoanStats.Row(status, before.loanType(), before.day(),
+                        before.loanAmount(), before.verificationFee());
+                locked.rows().put(id, after);
+                changes.add(new StatusChange(before, after));
+                changed = true;
+            }
+            // User_Reference callbacks carry the trackingId; waiters are keyed by CheckoutRequestID
+            String checkoutRequestID = locked.checkoutIds().get(ids.iterator().next());
+            outcomes.add(new Outcome(callback, checkoutRequestID != null ? checkoutRequestID : reference, changed));
+        }
+    }
+
+    private void reportUnmatched(List<Pending> batch, int[] counts) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                logUnchanged(batch.get(i).callback());
+            }
+        }
+    }
+
+    private static void logUnchanged(PayHeroCallback callback) {
+        MDC.put("checkoutRequestID", callback.reference());
+        log.warn("No status change for CheckoutRequestID/User_Reference {} (loan missing or already {})",
+                callback.reference(), callback.loanStatus());
+        MDC.remove("checkoutRequestID");
+    }
+
+    private void recordLag(List<Pending> batch) {
+        long now = System.nanoTime();
+        for (Pending pending : batch) {
+            applyLag.record(now - pending.enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+}
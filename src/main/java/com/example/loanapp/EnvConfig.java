@@ -1,9 +1,12 @@
 package com.example.loanapp;
 
 import io.github.cdimascio.dotenv.Dotenv;
-import org.springframework.context.annotation.Configuration;
 
-@Configuration
+// Holder for the .env values, loaded the first time a bean reads them.
+// Not a @Configuration: there are no bean methods, and a CGLIB proxy
+// made the context load .env while building its configuration classes.
+// For native images the class must stay initialized at run time (the
+// default), or the build machine's .env would be frozen into the binary.
 public class EnvConfig {
     public static final Dotenv dotenv = Dotenv.configure().ignoreIfMissing()
             .load();
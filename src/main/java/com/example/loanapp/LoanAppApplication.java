@@ -2,8 +2,10 @@ package com.example.loanapp;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(LoanAppRuntimeHints.class)
 public class LoanAppApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,55 @@
+package com.example.loanapp;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+
+// =====================================================================
+// Native image / AOT hints the build cannot infer on its own
+//
+// LoanApplication is both a JPA entity and the JSON body of /apply and
+// /all; StkPushRequest is bound from JSON. The records listed in
+// @RegisterReflectionForBinding are serialized by Jackson from Map or
+// List bodies, where Spring cannot see the element types. db/indexes.sql
+// is loaded by spring.sql.init when it is switched on, and the
+// logback/logback-*.xml configs instantiate their appenders and encoder
+// by class name.
+// =====================================================================
+@RegisterReflectionForBinding({
+        LoanApplication.class,
+        StkPushRequest.class,
+        LoanReconciliation.class,
+        PaymentStatus.class,
+        MpesaMessageView.class,
+        LoanStats.Bucket.class,
+        LoanSearch.Hit.class,
+        LoanBulkOperations.ItemResult.class,
+        MpesaReconciliation.Run.class
+})
+public class LoanAppRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // Hibernate instantiates and populates the entities reflectively
+        for (Class<?> entity : new Class<?>[] { LoanApplication.class, LoanReconciliation.class }) {
+            hints.reflection().registerType(entity,
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                    MemberCategory.DECLARED_FIELDS,
+                    MemberCategory.INVOKE_DECLARED_METHODS);
+        }
+
+        hints.resources().registerPattern("db/*.sql");
+        hints.resources().registerPattern("logback/*.xml");
+
+        // logback/logback-*.xml name these classes; Joran creates and configures them reflectively
+        for (String type : new String[] {
+                "net.logstash.logback.encoder.LogstashEncoder",
+                "ch.qos.logback.classic.AsyncAppender",
+                "ch.qos.logback.core.ConsoleAppender" }) {
+            hints.reflection().registerType(TypeReference.of(type),
+                    MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+    }
+}
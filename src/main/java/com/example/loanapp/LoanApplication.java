@@ -2,15 +2,31 @@ package com.example.loanapp;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.Date;
 
 @Data
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = LoanApplication.TRACKING_ID_UNIQUE, columnNames = "tracking_id"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = LoanCacheConfig.LOAN_REGION)
 public class LoanApplication {
 
+    // Hibernate only creates this on a fresh table (ddl-auto=update does not
+    // add it to an existing one); db/indexes.sql builds it under the same name.
+    static final String TRACKING_ID_UNIQUE = "uk_loan_application_tracking_id";
+
+    static final int ID_ALLOCATION_SIZE = 50;
+
+    // Pooled sequence: one nextval per 50 ids, and inserts can be batched
+    // (IDENTITY would force an immediate INSERT per entity). See db/indexes.sql
+    // and LoanIdSequenceCheck.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_application_seq")
+    @SequenceGenerator(name = "loan_application_seq", sequenceName = "loan_application_seq",
+            allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     private String name;
@@ -20,6 +36,7 @@ public class LoanApplication {
     private int loanAmount;
     private int verificationFee;
     private String status; // PENDING, APPROVED, REJECTED
+
     private String trackingId;
 
     @Column(columnDefinition = "TEXT")
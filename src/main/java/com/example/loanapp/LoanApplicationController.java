@@ -1,17 +1,39 @@
 package com.example.loanapp;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.*;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/loans")
@@ -32,12 +54,82 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public class LoanApplicationController {
 
+    private static final Logger log = LoggerFactory.getLogger(LoanApplicationController.class);
+
     @Autowired
     private LoanApplicationRepository repository;
 
-    private Random random = new Random();
-    private RestTemplate restTemplate = new RestTemplate();
-    private ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate readOnlyTx;
+
+    @Autowired
+    private PayHeroClient payHeroClient;
+
+    @Autowired
+    private CallbackIngestor callbackIngestor;
+
+    @Autowired
+    private CallbackDeduplicator callbackDeduplicator;
+
+    @Autowired
+    private PayHeroCallbackDecoder payHeroCallbackDecoder;
+
+    @Autowired
+    private PaymentMetrics paymentMetrics;
+
+    @Autowired
+    private PayloadSampler payloadSampler;
+
+    @Autowired
+    private LoanBulkOperations loanBulkOperations;
+
+    @Autowired
+    private LoanStats loanStats;
+
+    @Autowired
+    private MpesaReconciliation mpesaReconciliation;
+
+    @Autowired
+    private LoanReconciliationRepository reconciliationRepository;
+
+    @Autowired
+    private LoanSearch loanSearch;
+
+    @Autowired
+    private StkPushRateLimiter stkPushRateLimiter;
+
+    @Value("${loan.bulk.max-items}")
+    private int maxBulkItems;
+
+    // Payment statuses by CheckoutRequestID (bounded, with TTL)
+    @Autowired
+    private PaymentStatusCache paymentStatusCache;
+
+    @Autowired
+    private PaymentStatusNotifier paymentStatusNotifier;
+
+    @Autowired
+    private PaymentStatusPublisher paymentStatusPublisher;
+
+    @Autowired
+    private LoanApplyBatcher loanApplyBatcher;
+
+    // Page size bounds for the keyset listing
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    // Longest a status subscription is parked before answering "still pending"
+    private static final long MAX_STATUS_WAIT_SECONDS = 60;
+
+    public LoanApplicationController(PlatformTransactionManager transactionManager) {
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
 
     // =====================================================================
     // OLD SAFARICOM / DARAJA CREDENTIALS (commented out — kept for reference)
@@ -50,85 +142,58 @@ public class LoanApplicationController {
 
     // =====================================================================
     // PAYHERO CREDENTIALS
-    // Add these to your .env file:
+    // Read by PayHeroClient. Add these to your .env file:
     //   PAYHERO_API_USERNAME=zrFinMcH60MMV8mKVFwq
     //   PAYHERO_API_PASSWORD=your_password_here
     //   PAYHERO_CHANNEL_ID=your_channel_id_here
     //   PAYHERO_CALLBACK_URL=https://kopesa.onrender.com/api/loans/mpesa/callback
     // =====================================================================
-    private final String payHeroUsername = EnvConfig.dotenv.get("PAYHERO_API_USERNAME");
-    private final String payHeroPassword = EnvConfig.dotenv.get("PAYHERO_API_PASSWORD");
-    private final String payHeroChannelId = EnvConfig.dotenv.get("PAYHERO_CHANNEL_ID");
-    private final String callbackUrl = EnvConfig.dotenv.get("PAYHERO_CALLBACK_URL");
-
-    // PayHero STK Push endpoint
-    private static final String PAYHERO_STK_URL = "https://backend.payhero.co.ke/api/v2/payments";
-
-    // Map to store payment statuses
-    private static final Map<String, PaymentStatus> paymentStatusMap = new ConcurrentHashMap<>();
 
     @Autowired
     private LoanApplicationRepository loanApplicationRepository;
 
-    // Inner class to track payment details
-    private static class PaymentStatus {
-        String status; // pending, success, cancelled, failed
-        long timestamp;
-        String resultDesc;
-
-        PaymentStatus(String status, String resultDesc) {
-            this.status = status;
-            this.resultDesc = resultDesc;
-            this.timestamp = System.currentTimeMillis();
-        }
-    }
-
-    // =========================================================
-    // Helper: build PayHero Basic Auth header
-    // PayHero uses Basic Auth (base64 of "username:password")
-    // on every request — no separate token fetch needed.
-    // =========================================================
-    private String getPayHeroBasicAuth() {
-        String credentials = payHeroUsername + ":" + payHeroPassword;
-        return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes());
-    }
-
     @PostMapping("/apply")
     public LoanApplication applyLoan(@RequestBody LoanApplication application) {
         application.setStatus("PENDING");
         application.setApplicationDate(new Date());
 
-        // Generate random tracking ID: e.g., LON-C123456L9876543
-        String trackingId = "LON-C" + (100000 + random.nextInt(900000))
-                + "L" + (1000000 + random.nextInt(9000000));
-        application.setTrackingId(trackingId);
-
-        return repository.save(application);
+        return loanApplyBatcher.save(application);
     }
 
     @PostMapping("/stk-push")
     public ResponseEntity<Map<String, Object>> initiateStkPush(@RequestBody StkPushRequest request) {
+        MDC.put("trackingId", request.getTrackingId());
+
+        // 0. Admission control, before any database or PayHero work
+        StkPushRateLimiter.Decision admission =
+                stkPushRateLimiter.tryAcquire(rateLimitPhone(request.getPhone()), request.getTrackingId());
+        if (!admission.allowed()) {
+            MDC.remove("trackingId");
+            return ResponseEntity.status(429)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(admission.retryAfterSeconds()))
+                    .body(Map.of(
+                            "error", "Too many STK push requests, please retry later",
+                            "limit", admission.scope(),
+                            "retryAfterSeconds", admission.retryAfterSeconds()
+                    ));
+        }
+
         try {
             // 1. Find loan by trackingId
             Optional<LoanApplication> loanOptional = repository.findByTrackingId(request.getTrackingId());
             if (loanOptional.isEmpty()) {
-                System.err.println("Loan not found for trackingId: " + request.getTrackingId());
+                log.warn("Loan not found for trackingId: {}", request.getTrackingId());
                 return ResponseEntity.status(404).body(Map.of(
                         "error", "Loan not found for trackingId: " + request.getTrackingId()
                 ));
             }
+            // Possibly a cached copy: only read for the PayHero request, the
+            // values chosen in the frontend are written once PayHero accepts
             LoanApplication loan = loanOptional.get();
 
-            // Save selected values from frontend
-            loan.setLoanAmount(request.getLoanAmount());
-            loan.setVerificationFee(request.getVerificationFee());
-            if (loan.getStatus() == null || loan.getStatus().equals("NEW")) {
-                loan.setStatus("PENDING");
-            }
-
             // 2. Format phone
             String phone = formatPhone(request.getPhone());
-            System.out.println("Initiating PayHero STK Push for phone: " + phone + ", loan: " + loan.getTrackingId());
+            log.info("Initiating PayHero STK Push for loan {}", loan.getTrackingId());
 
             // =====================================================================
             // OLD SAFARICOM STK PUSH BLOCK (commented out — kept for reference)
@@ -197,44 +262,30 @@ public class LoanApplicationController {
             // NEW PAYHERO STK PUSH BLOCK
             // =====================================================================
 
-            // 3. Build PayHero STK Push payload
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("amount", request.getAmount());
-            payload.put("phone_number", phone);
-            payload.put("channel_id", Integer.parseInt(payHeroChannelId));
-            payload.put("provider", "m-pesa");
-            payload.put("external_reference", loan.getTrackingId()); // use trackingId as reference
-            payload.put("customer_name", loan.getName() != null ? loan.getName() : "Customer");
-            payload.put("callback_url", callbackUrl);
-
-            System.out.println("PayHero STK Push payload: " + payload);
-
-            // 4. Send PayHero STK Push (Basic Auth — no separate token fetch needed)
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Authorization", getPayHeroBasicAuth());
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            ResponseEntity<String> stkRes = restTemplate.postForEntity(
-                    PAYHERO_STK_URL,
-                    new HttpEntity<>(payload, headers),
-                    String.class
+            // 3. Send PayHero STK Push (pooled client, Basic Auth — no separate token fetch needed)
+            String response = payHeroClient.sendStkPush(
+                    request.getAmount(),
+                    phone,
+                    loan.getTrackingId(), // use trackingId as reference
+                    loan.getName() != null ? loan.getName() : "Customer"
             );
 
             // =====================================================================
             // END NEW PAYHERO BLOCK
             // =====================================================================
 
-            String response = stkRes.getBody();
-            System.out.println("PayHero STK Push raw response: " + response);
+            if (payloadSampler.sample()) {
+                log.info("PayHero STK Push raw response: {}", response);
+            }
 
-            // 5. Parse response
+            // 4. Parse response
             JsonNode root = objectMapper.readTree(response);
 
             // Handle PayHero errors
             if (root.has("error") || (root.has("success") && !root.get("success").asBoolean())) {
                 String errorMessage = root.has("error") ? root.get("error").asText()
                         : root.has("message") ? root.get("message").asText() : "Unknown error from PayHero";
-                System.err.println("PayHero error: " + errorMessage);
+                log.warn("PayHero error: {}", errorMessage);
                 return ResponseEntity.status(400).body(Map.of(
                         "error", errorMessage,
                         "rawResponse", response
@@ -244,14 +295,31 @@ public class LoanApplicationController {
             // PayHero returns CheckoutRequestID on success
             if (root.has("CheckoutRequestID")) {
                 String checkoutRequestID = root.get("CheckoutRequestID").asText();
+                MDC.put("checkoutRequestID", checkoutRequestID);
+
+                Optional<LoanApplicationRepository.StkPushedLoan> pushed = repository.updateStkPush(
+                        loan.getTrackingId(), checkoutRequestID, request.getLoanAmount(), request.getVerificationFee());
+                evictLoan(loan);
+                if (pushed.isEmpty()) {
+                    log.warn("Loan {} was deleted while its STK push was sent", loan.getTrackingId());
+                    return ResponseEntity.status(404).body(Map.of(
+                            "error", "Loan not found for trackingId: " + request.getTrackingId()
+                    ));
+                }
 
-                loan.setCheckoutRequestID(checkoutRequestID);
-                repository.save(loan);
+                LoanApplicationRepository.StkPushedLoan updated = pushed.get();
+                LoanStats.Row before = new LoanStats.Row(updated.getStatus(), updated.getLoanType(),
+                        LoanStats.Row.day(updated.getApplicationDate()),
+                        updated.getLoanAmount(), updated.getVerificationFee());
+                loanStats.changed(before, new LoanStats.Row(updated.getNewStatus(), before.loanType(), before.day(),
+                        request.getLoanAmount(), request.getVerificationFee()));
 
-                paymentStatusMap.put(checkoutRequestID, new PaymentStatus("pending", "PayHero STK Push sent"));
+                paymentStatusCache.put(checkoutRequestID,
+                        new PaymentStatus("pending", updated.getNewStatus(), "PayHero STK Push sent"));
+                paymentMetrics.stkPushSent(checkoutRequestID);
 
-                System.out.println("PayHero STK Push successfully initiated for loan " + loan.getTrackingId()
-                        + ", CheckoutRequestID: " + checkoutRequestID);
+                log.info("PayHero STK Push successfully initiated for loan {}, CheckoutRequestID: {}",
+                        loan.getTrackingId(), checkoutRequestID);
 
                 return ResponseEntity.ok(Map.of(
                         "message", "STK Push sent successfully",
@@ -260,22 +328,172 @@ public class LoanApplicationController {
             }
 
             // Unknown response
-            System.err.println("Unknown PayHero response: " + response);
+            log.error("Unknown PayHero response: {}", response);
             return ResponseEntity.status(500).body(Map.of(
                     "error", "Unknown response from PayHero",
                     "rawResponse", response
             ));
 
+        } catch (PayHeroUnavailableException e) {
+            // Fail fast while PayHero is down or saturated, the client retries after the hint
+            log.warn("STK Push refused for loan {}: {}", request.getTrackingId(), e.getMessage());
+            return ResponseEntity.status(503)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(Map.of(
+                            "error", "Payment provider temporarily unavailable, please retry",
+                            "retryAfterSeconds", e.getRetryAfterSeconds()
+                    ));
         } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("STK Push failed for loan " + request.getTrackingId() + ": " + e.getMessage());
+            log.error("STK Push failed for loan {}", request.getTrackingId(), e);
             return ResponseEntity.status(500).body(Map.of("error", "STK Push failed: " + e.getMessage()));
+        } finally {
+            MDC.remove("trackingId");
+            MDC.remove("checkoutRequestID");
         }
     }
 
+    // =====================================================================
+    // LISTING
+    //
+    // /all keeps its JSON array shape for the dashboard, but rows are now
+    // streamed from a database cursor instead of findAll(), so memory stays
+    // flat whatever the table size.
+    //
+    //   GET /all/page?cursor=&size=&status=&from=&to=   keyset pages
+    //   GET /all/stream?status=&from=&to=               NDJSON, one loan per line
+    //
+    // from/to are ISO dates (yyyy-MM-dd), both inclusive. Pages are newest
+    // first; cursor is the previous page's nextCursor, passed back as is.
+    // =====================================================================
     @GetMapping("/all")
-    public List<LoanApplication> getAllLoans() {
-        return repository.findAll();
+    public ResponseEntity<StreamingResponseBody> getAllLoans() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> streamLoans(out, null, null, null, true));
+    }
+
+    @GetMapping("/all/page")
+    public ResponseEntity<Map<String, Object>> getLoansPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.status(400).body(Map.of(
+                    "error", "size must be between 1 and " + MAX_PAGE_SIZE
+            ));
+        }
+
+        LoanPageCursor after;
+        try {
+            after = cursor == null ? null : LoanPageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(Map.of("error", "Invalid cursor"));
+        }
+
+        // Fetch one extra row to know whether another page exists. Loans
+        // without a date follow the dated ones (never within a date range).
+        List<LoanApplication> rows = readOnlyTx.execute(tx -> {
+            List<LoanApplication> page = new ArrayList<>();
+            if (after == null || after.applicationDate() != null) {
+                LoanPageCursor start = after == null ? LoanPageCursor.FIRST : after;
+                page.addAll(repository.findPage(start.applicationDate(), start.id(),
+                        status, startOfDay(from), startOfDay(to == null ? null : to.plusDays(1)),
+                        PageRequest.of(0, size + 1)));
+            }
+            if (page.size() <= size && from == null && to == null) {
+                page.addAll(repository.findUndatedPage(
+                        after != null && after.applicationDate() == null ? after.id() : null,
+                        status, PageRequest.of(0, size + 1 - page.size())));
+            }
+            return page;
+        });
+
+        boolean hasMore = rows.size() > size;
+        List<LoanApplication> items = hasMore ? rows.subList(0, size) : rows;
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("items", items);
+        body.put("nextCursor", hasMore ? LoanPageCursor.of(items.get(items.size() - 1)).encode() : null);
+        return ResponseEntity.ok(body);
+    }
+
+    // Ranked search by partial name, phone in any format, ID number or tracking ID
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> searchLoans(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
+
+        if (q.trim().length() < LoanSearch.MIN_TERM_LENGTH) {
+            return ResponseEntity.status(400).body(Map.of(
+                    "error", "q must have at least " + LoanSearch.MIN_TERM_LENGTH + " characters"
+            ));
+        }
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE || (long) page * size >= loanSearch.maxCandidates()) {
+            return ResponseEntity.status(400).body(Map.of(
+                    "error", "page must be >= 0, size between 1 and " + MAX_PAGE_SIZE
+                            + ", and at most " + loanSearch.maxCandidates() + " results can be paged through"
+            ));
+        }
+
+        // Fetch one extra row to know whether another page exists
+        List<LoanSearch.Hit> rows = loanSearch.search(q, page * size, size + 1);
+        boolean hasMore = rows.size() > size;
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("items", hasMore ? rows.subList(0, size) : rows);
+        body.put("page", page);
+        body.put("size", size);
+        body.put("hasMore", hasMore);
+        return ResponseEntity.ok(body);
+    }
+
+    @GetMapping("/all/stream")
+    public ResponseEntity<StreamingResponseBody> streamLoans(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        Date fromDate = startOfDay(from);
+        Date toDate = startOfDay(to == null ? null : to.plusDays(1));
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> streamLoans(out, status, fromDate, toDate, false));
+    }
+
+    // Writes loans straight from the JPA stream, either as one JSON array or
+    // newline-delimited. Each entity is detached once written so the
+    // persistence context does not grow with the result set.
+    private void streamLoans(OutputStream out, String status, Date from, Date to, boolean asArray) {
+        readOnlyTx.executeWithoutResult(tx -> {
+            try (Stream<LoanApplication> loans = repository.streamAll(status, from, to);
+                 SequenceWriter writer = asArray
+                         ? objectMapper.writer()
+                                 .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                                 .writeValuesAsArray(out)
+                         : objectMapper.writer()
+                                 .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                                 .withRootValueSeparator("\n")
+                                 .writeValues(out)) {
+
+                Iterator<LoanApplication> it = loans.iterator();
+                while (it.hasNext()) {
+                    LoanApplication loan = it.next();
+                    writer.write(loan);
+                    entityManager.detach(loan);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to stream loans", e);
+            }
+        });
+    }
+
+    private static Date startOfDay(LocalDate day) {
+        return day == null ? null : Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
     }
 
     // =====================================================================
@@ -347,7 +565,7 @@ public class LoanApplicationController {
                     repository.save(loan);
                 }
 
-                paymentStatusMap.put(checkoutRequestID, new PaymentStatus("pending", "STK Push sent"));
+                paymentStatusCache.put(checkoutRequestID, new PaymentStatus("pending", "PENDING", "STK Push sent"));
                 System.out.println("STK Push initiated: " + checkoutRequestID);
             } catch (Exception e) {
                 System.err.println("Could not extract CheckoutRequestID: " + e.getMessage());
@@ -362,7 +580,20 @@ public class LoanApplicationController {
     }
     */
 
-    private String formatPhone(String phone) {
+    // Rate-limit key: the formatPhone form, so 07..., 7... and +254... share a bucket.
+    // Numbers formatPhone rejects are keyed as sent and fail later as before.
+    private static String rateLimitPhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        try {
+            return formatPhone(phone);
+        } catch (RuntimeException e) {
+            return phone;
+        }
+    }
+
+    static String formatPhone(String phone) {
         phone = phone.replace("+", "").replace(" ", "");
 
         if (phone.startsWith("0")) {
@@ -394,61 +625,58 @@ public class LoanApplicationController {
 
 
     @PostMapping("/mpesa/callback")
-    public ResponseEntity<Map<String, Object>> mpesaCallback(@RequestBody Map<String, Object> payload) {
+    public ResponseEntity<Map<String, Object>> mpesaCallback(@RequestBody(required = false) byte[] body) {
+        Timer.Sample sample = paymentMetrics.startCallback();
         try {
-            System.out.println("PayHero Callback received: " + payload);
+            ResponseEntity<Map<String, Object>> response = handleCallback(body);
+            paymentMetrics.stopCallback(sample, response.getStatusCode().value());
+            return response;
+        } finally {
+            MDC.remove("trackingId");
+            MDC.remove("checkoutRequestID");
+        }
+    }
 
-            if (payload == null || payload.isEmpty()) {
-                System.err.println("Invalid callback payload: null or empty body");
-                return ResponseEntity.status(400).body(Map.of("error", "Invalid callback payload"));
+    private ResponseEntity<Map<String, Object>> handleCallback(byte[] body) {
+        try {
+            if (body != null && payloadSampler.sample()) {
+                log.info("PayHero Callback received: {}", new String(body, StandardCharsets.UTF_8));
             }
 
             // Determine which field to use: CheckoutRequestID or User_Reference
-            String checkoutRequestID = null;
-            Integer resultCode = -1;
-            String resultDesc = "No description";
-
-            if (payload.containsKey("CheckoutRequestID")) {
-                checkoutRequestID = payload.get("CheckoutRequestID").toString();
-                resultCode = payload.get("ResultCode") != null
-                        ? Integer.parseInt(payload.get("ResultCode").toString())
-                        : -1;
-                resultDesc = payload.get("ResultDesc") != null
-                        ? payload.get("ResultDesc").toString()
-                        : "No description";
-            } else if (payload.containsKey("User_Reference")) {
-                checkoutRequestID = payload.get("User_Reference").toString();
-                resultCode = payload.get("status") != null && Boolean.FALSE.equals(payload.get("status"))
-                        ? 1032 // treat as cancelled if status=false
-                        : 0;   // treat as success if status=true
-                resultDesc = "Callback received with User_Reference";
-            } else if (payload.containsKey("response")) {
-                // Some PayHero callbacks wrap details inside 'response'
-                Map<String, Object> response = (Map<String, Object>) payload.get("response");
-                if (response.containsKey("CheckoutRequestID")) {
-                    checkoutRequestID = response.get("CheckoutRequestID").toString();
-                    resultCode = response.get("ResultCode") != null
-                            ? Integer.parseInt(response.get("ResultCode").toString())
-                            : -1;
-                    resultDesc = response.get("ResultDesc") != null
-                            ? response.get("ResultDesc").toString()
-                            : "No description";
-                } else if (response.containsKey("User_Reference")) {
-                    checkoutRequestID = response.get("User_Reference").toString();
-                    resultCode = response.get("Status") != null && "Failed".equalsIgnoreCase(response.get("Status").toString())
-                            ? 1032
-                            : 0;
-                    resultDesc = response.get("ResultDesc") != null
-                            ? response.get("ResultDesc").toString()
-                            : "Callback with response.User_Reference";
-                }
+            PayHeroCallback callback;
+            try {
+                callback = payHeroCallbackDecoder.decode(body);
+            } catch (PayHeroCallbackDecoder.InvalidCallbackException e) {
+                log.warn("Invalid callback payload: {}", e.getMessage());
+                return ResponseEntity.status(400).body(Map.of("error", "Invalid callback payload"));
             }
 
-            if (checkoutRequestID == null) {
-                System.err.println("Invalid PayHero callback: missing CheckoutRequestID/User_Reference");
+            if (callback == null) {
+                log.warn("Invalid PayHero callback: missing CheckoutRequestID/User_Reference");
                 return ResponseEntity.status(400).body(Map.of("error", "Missing CheckoutRequestID or User_Reference"));
             }
 
+            String checkoutRequestID = callback.reference();
+            MDC.put("checkoutRequestID", checkoutRequestID);
+            paymentMetrics.callbackResult(callback);
+            log.info("PayHero Callback received, ResultCode: {}", callback.resultCode());
+
+            // PayHero retries: a callback we already applied is acknowledged without any work
+            if (callbackDeduplicator.alreadySeen(callback)) {
+                return ResponseEntity.ok(Map.of("message", "Callback already processed"));
+            }
+
+            // Async mode: acknowledge now, the ingestor writes the status in batches
+            // and, once committed, records the callback and publishes the status
+            if (callbackIngestor.isEnabled()) {
+                if (!callbackIngestor.submit(callback)) {
+                    log.warn("Callback queue full, asking PayHero to retry");
+                    return ResponseEntity.status(503).body(Map.of("error", "Callback queue full, retry later"));
+                }
+                return ResponseEntity.ok(Map.of("message", "Callback accepted"));
+            }
+
             // Lookup loan by CheckoutRequestID first, then fallback to TrackingId
             Optional<LoanApplication> loanOptional = repository.findByCheckoutRequestID(checkoutRequestID);
             if (loanOptional.isEmpty()) {
@@ -457,36 +685,51 @@ public class LoanApplicationController {
 
             if (loanOptional.isPresent()) {
                 LoanApplication loan = loanOptional.get();
+                MDC.put("trackingId", loan.getTrackingId());
+
+                // Seen-set miss (restart, eviction) but the loan is already there: nothing to write
+                if (callback.loanStatus().equals(loan.getStatus())) {
+                    callbackDeduplicator.recordDuplicate(callback);
+                    return ResponseEntity.ok(Map.of("message", "Callback already processed"));
+                }
 
-                switch (resultCode) {
-                    case 0 -> {
-                        loan.setStatus("PAID");
-                        paymentStatusMap.put(checkoutRequestID, new PaymentStatus("success", resultDesc));
-                        System.out.println("Payment successful for loan " + loan.getTrackingId());
-                    }
-                    case 1032 -> {
-                        loan.setStatus("CANCELLED");
-                        paymentStatusMap.put(checkoutRequestID, new PaymentStatus("cancelled", resultDesc));
-                        System.out.println("Payment cancelled for loan " + loan.getTrackingId());
-                    }
-                    default -> {
-                        loan.setStatus("FAILED");
-                        paymentStatusMap.put(checkoutRequestID, new PaymentStatus("failed", resultDesc));
-                        System.out.println("Payment failed for loan " + loan.getTrackingId()
-                                + ", ResultCode: " + resultCode + ", Desc: " + resultDesc);
-                    }
+                // Only the status column is written; 0 rows means another
+                // delivery of this callback got there first
+                LoanStats.Row before = LoanStats.Row.of(loan);
+                int updated = repository.updateStatus(checkoutRequestID, callback.loanStatus());
+                evictLoan(loan);
+                if (updated == 0) {
+                    callbackDeduplicator.recordDuplicate(callback);
+                    return ResponseEntity.ok(Map.of("message", "Callback already processed"));
+                }
+                loanStats.changed(before, new LoanStats.Row(callback.loanStatus(), before.loanType(),
+                        before.day(), before.loanAmount(), before.verificationFee()));
+
+                switch (callback.resultCode()) {
+                    case PayHeroCallback.RESULT_SUCCESS ->
+                            log.info("Payment successful for loan {}", loan.getTrackingId());
+                    case PayHeroCallback.RESULT_CANCELLED ->
+                            log.info("Payment cancelled for loan {}", loan.getTrackingId());
+                    default -> log.info("Payment failed for loan {}, ResultCode: {}, Desc: {}",
+                            loan.getTrackingId(), callback.resultCode(), callback.resultDesc());
                 }
 
-                repository.save(loan);
+                callbackDeduplicator.recordFirst(callback);
+
+                // User_Reference callbacks carry the trackingId; waiters are keyed by CheckoutRequestID
+                paymentStatusPublisher.publish(loan.getCheckoutRequestID() != null
+                        ? loan.getCheckoutRequestID() : checkoutRequestID, callback);
             } else {
-                System.err.println("Loan not found for CheckoutRequestID/User_Reference: " + checkoutRequestID);
+                log.warn("Loan not found for CheckoutRequestID/User_Reference: {}", checkoutRequestID);
             }
 
             return ResponseEntity.ok(Map.of("message", "Callback processed successfully"));
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(503).body(Map.of("error", "Callback queue unavailable, retry later"));
         } catch (Exception e) {
-            System.err.println("Error processing PayHero callback: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error processing PayHero callback", e);
             return ResponseEntity.status(500).body(Map.of("error", "Callback processing failed"));
         }
     }
@@ -495,24 +738,128 @@ public class LoanApplicationController {
 
 
 
+    // Cache first, then wake up anyone waiting on /status/{id}/wait or /events
     @GetMapping("/mpesa/status/{checkoutRequestID}")
     public ResponseEntity<?> getPaymentStatus(@PathVariable String checkoutRequestID) {
-        Optional<LoanApplication> loanOptional =
-                loanApplicationRepository.findByCheckoutRequestID(checkoutRequestID);
+        PaymentStatus status = currentPaymentStatus(checkoutRequestID);
 
-        if (loanOptional.isEmpty()) {
+        if (status == null) {
             return ResponseEntity.ok(Map.of(
                     "status", "error",
                     "message", "Loan not found"
             ));
         }
 
-        LoanApplication loan = loanOptional.get();
+        return ResponseEntity.ok(statusBody(status));
+    }
+
+    // =====================================================================
+    // PUSHED STATUS — instead of polling /mpesa/status every second
+    //
+    //   GET /mpesa/status/{id}/wait?timeoutSeconds=25   long-poll
+    //   GET /mpesa/status/{id}/events                    Server-Sent Events
+    //
+    // Both answer at once if the payment is already settled, otherwise
+    // the request is parked (no thread held) until mpesaCallback settles
+    // it or the timeout passes, in which case the current status is sent.
+    // Only a callback handled by this instance wakes the request early
+    // (see PaymentStatusNotifier).
+    // =====================================================================
+    @GetMapping("/mpesa/status/{checkoutRequestID}/wait")
+    public DeferredResult<ResponseEntity<?>> waitForPaymentStatus(
+            @PathVariable String checkoutRequestID,
+            @RequestParam(defaultValue = "25") long timeoutSeconds) {
+
+        long timeoutMs = TimeUnit.SECONDS.toMillis(Math.max(1, Math.min(timeoutSeconds, MAX_STATUS_WAIT_SECONDS)));
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(timeoutMs);
+
+        Runnable unsubscribe = paymentStatusNotifier.subscribe(checkoutRequestID,
+                status -> result.setResult(ResponseEntity.ok(statusBody(status))));
+        result.onCompletion(unsubscribe);
+        result.onTimeout(() -> result.setResult(getPaymentStatus(checkoutRequestID)));
+
+        // Settled before we subscribed?
+        PaymentStatus current = currentPaymentStatus(checkoutRequestID);
+        if (current == null) {
+            result.setResult(getPaymentStatus(checkoutRequestID));
+        } else if (!current.isPending()) {
+            result.setResult(ResponseEntity.ok(statusBody(current)));
+        }
+        return result;
+    }
+
+    @GetMapping(value = "/mpesa/status/{checkoutRequestID}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPaymentStatus(@PathVariable String checkoutRequestID) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.SECONDS.toMillis(MAX_STATUS_WAIT_SECONDS));
 
-        return ResponseEntity.ok(Map.of(
-                "status", loan.getStatus(),
+        Runnable unsubscribe = paymentStatusNotifier.subscribe(checkoutRequestID,
+                status -> sendFinalStatus(emitter, status));
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(() -> sendFinalStatus(emitter, currentPaymentStatus(checkoutRequestID)));
+        emitter.onError(e -> unsubscribe.run());
+
+        PaymentStatus current = currentPaymentStatus(checkoutRequestID);
+        if (current == null) {
+            try {
+                emitter.send(SseEmitter.event().name("status")
+                        .data(Map.of("status", "error", "message", "Loan not found")));
+            } catch (IOException ignored) {
+                // client already gone
+            }
+            emitter.complete();
+        } else if (!current.isPending()) {
+            sendFinalStatus(emitter, current);
+        } else {
+            try {
+                emitter.send(SseEmitter.event().name("status").data(statusBody(current)));
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+        }
+        return emitter;
+    }
+
+    private void sendFinalStatus(SseEmitter emitter, PaymentStatus status) {
+        try {
+            if (status != null) {
+                emitter.send(SseEmitter.event().name("status").data(statusBody(status)));
+            }
+            emitter.complete();
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    // Cache first, then the read replica (if configured), then the primary in
+    // case the replica has not caught up with a fresh STK push yet. Each
+    // lookup is its own transaction with its own connection; that needs
+    // spring.jpa.open-in-view=false, or both reuse the request's connection
+    // (ReadReplicaFallbackTests). Null when no loan has this CheckoutRequestID.
+    private PaymentStatus currentPaymentStatus(String checkoutRequestID) {
+        PaymentStatus cached = paymentStatusCache.get(checkoutRequestID);
+        if (cached != null && cached.loanStatus() != null) {
+            return cached;
+        }
+
+        Optional<LoanApplication> loanOptional = readOnlyTx.execute(tx ->
+                loanApplicationRepository.findByCheckoutRequestID(checkoutRequestID));
+        if (loanOptional.isEmpty()) {
+            loanOptional = loanApplicationRepository.findByCheckoutRequestID(checkoutRequestID);
+        }
+        if (loanOptional.isEmpty()) {
+            return null;
+        }
+
+        PaymentStatus status = PaymentStatus.fromLoan(loanOptional.get());
+        paymentStatusCache.put(checkoutRequestID, status);
+        return status;
+    }
+
+    private static Map<String, Object> statusBody(PaymentStatus status) {
+        return Map.of(
+                "status", status.loanStatus(),
                 "message", "Status fetched successfully"
-        ));
+        );
     }
 
     // Delete a loan by its tracking ID
@@ -524,9 +871,10 @@ public class LoanApplicationController {
         if (loanOptional.isPresent()) {
             LoanApplication loan = loanOptional.get();
             repository.delete(loan);
+            loanStats.removed(LoanStats.Row.of(loan));
 
             if (loan.getCheckoutRequestID() != null) {
-                paymentStatusMap.remove(loan.getCheckoutRequestID());
+                paymentStatusCache.remove(loan.getCheckoutRequestID());
             }
 
             return ResponseEntity.ok(Map.of(
@@ -551,65 +899,248 @@ public class LoanApplicationController {
                 return ResponseEntity.status(400).body(Map.of("error", "Missing trackingId or mpesaMessage"));
             }
 
-            Optional<LoanApplication> loanOptional = repository.findByTrackingId(trackingId);
-
-            if (loanOptional.isEmpty()) {
+            Optional<Long> updatedId = repository.updateMpesaMessage(trackingId, mpesaMessage, new Date());
+            if (updatedId.isEmpty()) {
                 return ResponseEntity.status(404).body(Map.of("error", "Loan not found"));
             }
-
-            LoanApplication loan = loanOptional.get();
-            loan.setMpesaMessage(mpesaMessage);
-            loan.setMpesaMessageDate(new Date());
-            repository.save(loan);
+            evictLoan(updatedId.get());
 
             return ResponseEntity.ok(Map.of(
                     "message", "M-Pesa message saved successfully",
                     "trackingId", trackingId
             ));
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Failed to save M-Pesa message", e);
             return ResponseEntity.status(500).body(Map.of("error", "Server error"));
         }
     }
 
+    // Without page/size the full list is returned as before; with them, a
+    // page in the same shape as /search (next is the page to ask for, null
+    // on the last one). Filtering, ordering and projection all happen in
+    // Postgres either way.
     @GetMapping("/mpesa-messages")
-    public List<Map<String, Object>> getAllMpesaMessages() {
-        return repository.findAll().stream()
-                .filter(l -> l.getMpesaMessage() != null)
-                .map(l -> {
-                    Map<String, Object> map = new HashMap<>();
-                    map.put("trackingId", l.getTrackingId());
-                    map.put("name", l.getName());
-                    map.put("phone", l.getPhone());
-                    map.put("mpesaMessage", l.getMpesaMessage());
-                    map.put("date", l.getMpesaMessageDate());
-                    map.put("status", l.getStatus());
-                    return map;
-                })
-                .toList();
+    public ResponseEntity<?> getAllMpesaMessages(
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size) {
+
+        if (page == null && size == null) {
+            return ResponseEntity.ok(readOnlyTx.execute(tx -> repository.findMpesaMessages(Pageable.unpaged()).getContent()));
+        }
+
+        int pageNumber = page == null ? 0 : page;
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (pageNumber < 0 || pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            return ResponseEntity.status(400).body(Map.of(
+                    "error", "page must be >= 0 and size between 1 and " + MAX_PAGE_SIZE
+            ));
+        }
+
+        Slice<MpesaMessageView> messages = readOnlyTx.execute(tx ->
+                repository.findMpesaMessages(PageRequest.of(pageNumber, pageSize)));
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("items", messages.getContent());
+        body.put("page", pageNumber);
+        body.put("size", pageSize);
+        body.put("hasMore", messages.hasNext());
+        body.put("next", messages.hasNext() ? pageNumber + 1 : null);
+        return ResponseEntity.ok(body);
+    }
+
+    // =====================================================================
+    // RECONCILIATION — saved M-Pesa SMS checked against the verification fee
+    //
+    //   POST /reconciliation/run                          start a run (202, 409 if running)
+    //   GET  /reconciliation                              last run and totals per outcome
+    //   GET  /reconciliation/results?outcome=&cursor=&size=   keyset pages of results
+    // =====================================================================
+    @PostMapping("/reconciliation/run")
+    public ResponseEntity<MpesaReconciliation.Run> runReconciliation() {
+        if (!mpesaReconciliation.start()) {
+            return ResponseEntity.status(409).body(mpesaReconciliation.lastRun());
+        }
+        return ResponseEntity.status(202).body(mpesaReconciliation.lastRun());
+    }
+
+    @GetMapping("/reconciliation")
+    public MpesaReconciliation.Run getReconciliation() {
+        return mpesaReconciliation.lastRun();
+    }
+
+    @GetMapping("/reconciliation/results")
+    public ResponseEntity<Map<String, Object>> getReconciliationResults(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+            @RequestParam(required = false) String outcome) {
+
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.status(400).body(Map.of(
+                    "error", "size must be between 1 and " + MAX_PAGE_SIZE
+            ));
+        }
+
+        List<LoanReconciliation> rows = readOnlyTx.execute(tx ->
+                reconciliationRepository.findPage(cursor, outcome, PageRequest.of(0, size + 1)));
+
+        boolean hasMore = rows.size() > size;
+        List<LoanReconciliation> items = hasMore ? rows.subList(0, size) : rows;
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("items", items);
+        body.put("nextCursor", hasMore ? items.get(items.size() - 1).getTrackingId() : null);
+        return ResponseEntity.ok(body);
     }
 
     @PutMapping("/update-offer")
     public ResponseEntity<Map<String, String>> updateLoanOffer(@RequestBody Map<String, Object> payload) {
         String trackingId = (String) payload.get("trackingId");
 
-        Optional<LoanApplication> optionalLoan = repository.findByTrackingId(trackingId);
-        if (optionalLoan.isEmpty()) {
+        Integer loanAmount = payload.get("loanAmount") instanceof Number amount ? amount.intValue() : null;
+        Integer verificationFee = payload.get("verificationFee") instanceof Number fee ? fee.intValue() : null;
+
+        Optional<LoanApplicationRepository.UpdatedLoan> updated =
+                repository.updateOffer(trackingId, loanAmount, verificationFee);
+        if (updated.isEmpty()) {
             return ResponseEntity.status(404).body(Map.of("error", "Loan not found"));
         }
 
-        LoanApplication loan = optionalLoan.get();
+        LoanApplicationRepository.UpdatedLoan loan = updated.get();
+        evictLoan(loan.getId());
+        LoanStats.Row before = new LoanStats.Row(loan.getStatus(), loan.getLoanType(),
+                LoanStats.Row.day(loan.getApplicationDate()), loan.getLoanAmount(), loan.getVerificationFee());
+        loanStats.changed(before, new LoanStats.Row(before.status(), before.loanType(), before.day(),
+                loanAmount != null ? loanAmount : before.loanAmount(),
+                verificationFee != null ? verificationFee : before.verificationFee()));
+
+        return ResponseEntity.ok(Map.of("message", "Loan offer saved"));
+    }
+
+    // After a partial update any copy of the loan read earlier is out of date:
+    // drop it from this request's session (no flush may write it back) and
+    // from the second-level cache
+    private void evictLoan(LoanApplication loan) {
+        entityManager.detach(loan);
+        evictLoan(loan.getId());
+    }
 
-        if (payload.get("loanAmount") instanceof Number) {
-            loan.setLoanAmount(((Number) payload.get("loanAmount")).intValue());
+    private void evictLoan(Long id) {
+        entityManager.getEntityManagerFactory().getCache().evict(LoanApplication.class, id);
+    }
+
+    // =====================================================================
+    // BULK — back office changes on many loans in one request
+    //
+    //   PUT    /update-offer/bulk  [{ "trackingId", "loanAmount", "verificationFee" }, ...]
+    //   DELETE /delete/bulk        { "trackingIds": [...] }
+    //
+    // Both answer with one result per item (updated / deleted / not_found / invalid).
+    // =====================================================================
+    @PutMapping("/update-offer/bulk")
+    public ResponseEntity<Map<String, Object>> updateLoanOffers(@RequestBody List<Map<String, Object>> payload) {
+        if (payload.size() > maxBulkItems) {
+            return ResponseEntity.status(400).body(Map.of("error", "At most " + maxBulkItems + " items per request"));
         }
 
-        if (payload.get("verificationFee") instanceof Number) {
-            loan.setVerificationFee(((Number) payload.get("verificationFee")).intValue());
+        List<LoanBulkOperations.OfferChange> changes = new ArrayList<>(payload.size());
+        for (Map<String, Object> item : payload) {
+            changes.add(new LoanBulkOperations.OfferChange(
+                    item.get("trackingId") instanceof String trackingId ? trackingId : null,
+                    item.get("loanAmount") instanceof Number amount ? amount.intValue() : null,
+                    item.get("verificationFee") instanceof Number fee ? fee.intValue() : null));
         }
 
-        repository.save(loan);
+        return ResponseEntity.ok(bulkBody(loanBulkOperations.updateOffers(changes), LoanBulkOperations.UPDATED));
+    }
 
-        return ResponseEntity.ok(Map.of("message", "Loan offer saved"));
+    @DeleteMapping("/delete/bulk")
+    @CrossOrigin(origins = "https://kopesha.vercel.app")
+    public ResponseEntity<Map<String, Object>> deleteLoans(@RequestBody Map<String, List<String>> payload) {
+        List<String> trackingIds = payload.get("trackingIds");
+        if (trackingIds == null || trackingIds.isEmpty()) {
+            return ResponseEntity.status(400).body(Map.of("error", "Missing trackingIds"));
+        }
+        if (trackingIds.size() > maxBulkItems) {
+            return ResponseEntity.status(400).body(Map.of("error", "At most " + maxBulkItems + " items per request"));
+        }
+
+        LoanBulkOperations.DeleteResult result = loanBulkOperations.deleteAll(trackingIds);
+
+        List<String> checkoutRequestIDs = new ArrayList<>();
+        for (LoanBulkOperations.DeletedLoan loan : result.deleted()) {
+            if (loan.checkoutRequestID() != null) {
+                checkoutRequestIDs.add(loan.checkoutRequestID());
+            }
+        }
+        paymentStatusCache.removeAll(checkoutRequestIDs);
+
+        return ResponseEntity.ok(bulkBody(result.results(), LoanBulkOperations.DELETED));
+    }
+
+    private static Map<String, Object> bulkBody(List<LoanBulkOperations.ItemResult> results, String successResult) {
+        long succeeded = results.stream().filter(r -> successResult.equals(r.result())).count();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put(successResult, succeeded);
+        body.put("failed", results.size() - succeeded);
+        body.put("results", results);
+        return body;
+    }
+
+    // =====================================================================
+    // STATS — dashboard totals from the in-memory aggregates (LoanStats)
+    //
+    //   GET /stats?from=&to=
+    //
+    // Counts and loanAmount/verificationFee sums overall, by status, by
+    // loan type and by applicationDate day, plus the raw buckets.
+    // from/to are ISO dates (yyyy-MM-dd), both inclusive. The totals are a
+    // snapshot of all loans taken at startup, moved by this instance's own
+    // writes since; other instances' writes are not seen (see LoanStats).
+    // =====================================================================
+    @GetMapping("/stats")
+    public Map<String, Object> getStats(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        List<LoanStats.Bucket> buckets = loanStats.buckets(from, to);
+
+        Map<String, long[]> byStatus = new TreeMap<>();
+        Map<String, long[]> byLoanType = new TreeMap<>();
+        Map<String, long[]> byDay = new TreeMap<>(Comparator.reverseOrder());
+        long[] total = new long[3];
+        for (LoanStats.Bucket bucket : buckets) {
+            addTo(total, bucket);
+            addTo(byStatus.computeIfAbsent(LoanStats.label(bucket.status()), k -> new long[3]), bucket);
+            addTo(byLoanType.computeIfAbsent(LoanStats.label(bucket.loanType()), k -> new long[3]), bucket);
+            addTo(byDay.computeIfAbsent(LoanStats.label(bucket.day()), k -> new long[3]), bucket);
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("total", totalsBody(total));
+        body.put("byStatus", totalsBody(byStatus));
+        body.put("byLoanType", totalsBody(byLoanType));
+        body.put("byDay", totalsBody(byDay));
+        body.put("buckets", buckets);
+        return body;
+    }
+
+    private static void addTo(long[] totals, LoanStats.Bucket bucket) {
+        totals[0] += bucket.count();
+        totals[1] += bucket.loanAmount();
+        totals[2] += bucket.verificationFee();
+    }
+
+    private static Map<String, Object> totalsBody(Map<String, long[]> groups) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        groups.forEach((label, totals) -> body.put(label, totalsBody(totals)));
+        return body;
+    }
+
+    private static Map<String, Object> totalsBody(long[] totals) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("count", totals[0]);
+        body.put("loanAmount", totals[1]);
+        body.put("verificationFee", totals[2]);
+        return body;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,12 @@
+package com.example.loanapp;
+
+import java.util.Optional;
+
+// Lookups of a single loan that go through the second-level cache
+// (LoanCacheConfig) before the database; see LoanApplicationLookupsImpl.
+public interface LoanApplicationLookups {
+
+    Optional<LoanApplication> findByTrackingId(String trackingId);
+
+    Optional<LoanApplication> findByCheckoutRequestID(String checkoutRequestID);
+}
@@ -0,0 +1,104 @@
+package com.example.loanapp;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+// =====================================================================
+// Cached single-loan lookups, mixed into LoanApplicationRepository
+//
+// Bounded maps remember which loan id a trackingId or checkoutRequestID
+// resolved to; the loan itself is then loaded by id, which Hibernate
+// serves from the second-level cache (LoanCacheConfig). A mapping is
+// only trusted while the loaded loan still carries the key: a later STK
+// push replaces checkoutRequestID, and a deleted loan loads as null.
+// On a miss the lookup is one query, which also fills both caches.
+//
+// Not read-only on purpose: these lookups feed writes (stk-push, callback,
+// update-offer, delete) and must not see a lagging read replica. Wrapped in
+// a read-only transaction (status polling) they join it and use the replica;
+// rows read there are not put into the caches, which the writes share.
+// =====================================================================
+public class LoanApplicationLookupsImpl implements LoanApplicationLookups {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final Cache<String, Long> idsByTrackingId;
+    private final Cache<String, Long> idsByCheckoutRequestID;
+
+    public LoanApplicationLookupsImpl(@Value("${loan.cache.max-size}") long maxSize,
+                                      @Value("${loan.cache.ttl-seconds}") long ttlSeconds) {
+        this.idsByTrackingId = ids(maxSize, ttlSeconds);
+        this.idsByCheckoutRequestID = ids(maxSize, ttlSeconds);
+    }
+
+    @Override
+    @Transactional
+    public Optional<LoanApplication> findByTrackingId(String trackingId) {
+        return find(idsByTrackingId, "trackingId", trackingId, LoanApplication::getTrackingId);
+    }
+
+    @Override
+    @Transactional
+    public Optional<LoanApplication> findByCheckoutRequestID(String checkoutRequestID) {
+        return find(idsByCheckoutRequestID, "checkoutRequestID", checkoutRequestID,
+                LoanApplication::getCheckoutRequestID);
+    }
+
+    private Optional<LoanApplication> find(Cache<String, Long> ids, String attribute, String key,
+                                           Function<LoanApplication, String> keyOf) {
+        if (key == null) {
+            return Optional.empty();
+        }
+        Session session = entityManager.unwrap(Session.class);
+        CacheMode previous = session.getCacheMode();
+        boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (readOnly) {
+            session.setCacheMode(CacheMode.GET);
+        }
+        try {
+            Long id = ids.getIfPresent(key);
+            if (id != null) {
+                LoanApplication loan = session.find(LoanApplication.class, id);
+                if (loan != null && key.equals(keyOf.apply(loan))) {
+                    return Optional.of(loan);
+                }
+                ids.invalidate(key);
+            }
+
+            List<LoanApplication> loans = session.createQuery(
+                            "select l from LoanApplication l where l." + attribute + " = :key", LoanApplication.class)
+                    .setParameter("key", key)
+                    .getResultList();
+            if (loans.isEmpty()) {
+                return Optional.empty();
+            }
+            LoanApplication loan = loans.get(0);
+            if (!readOnly) {
+                ids.put(key, loan.getId());
+            }
+            return Optional.of(loan);
+        } finally {
+            session.setCacheMode(previous);
+        }
+    }
+
+    private static Cache<String, Long> ids(long maxSize, long ttlSeconds) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+}
@@ -1,10 +1,168 @@
 package com.example.loanapp;
 
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface LoanApplicationRepository extends JpaRepository<LoanApplication, Long> {
-    Optional<LoanApplication> findByTrackingId(String trackingId);
-    Optional<LoanApplication> findByCheckoutRequestID(String checkoutRequestID);
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_NATIVE_SPACES;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+// findByTrackingId and findByCheckoutRequestID come from LoanApplicationLookups
+public interface LoanApplicationRepository extends JpaRepository<LoanApplication, Long>, LoanApplicationLookups {
+
+    // Keyset page of dated loans, newest first, on (applicationDate, id):
+    // ids alone do not follow the date, instances take blocks of 50 from the
+    // sequence and interleave. The cursor is the last row of the previous
+    // page (LoanPageCursor.FIRST, past every loan, for the first one); the
+    // row comparison is an index range on idx_loan_application_date_id, no
+    // OFFSET scan. Listings bypass the
+    // second-level cache: it is sized for in-flight loans, not whole pages.
+    // The Postgres driver sends timestamps untyped, so a bare ":date is null"
+    // cannot be planned; those checks go through a cast.
+    @QueryHints(@QueryHint(name = HINT_CACHE_MODE, value = "IGNORE"))
+    @Query("select l from LoanApplication l"
+            + " where l.applicationDate is not null"
+            + " and (l.applicationDate, l.id) < (:afterDate, :afterId)"
+            + " and (:status is null or l.status = :status)"
+            + " and (cast(:from as LocalDateTime) is null or l.applicationDate >= :from)"
+            + " and (cast(:to as LocalDateTime) is null or l.applicationDate < :to)"
+            + " order by l.applicationDate desc nulls last, l.id desc")
+    @Transactional(readOnly = true)
+    List<LoanApplication> findPage(@Param("afterDate") Date afterDate,
+                                   @Param("afterId") Long afterId,
+                                   @Param("status") String status,
+                                   @Param("from") Date from,
+                                   @Param("to") Date to,
+                                   Pageable pageable);
+
+    // Loans without an applicationDate, listed after all dated ones, by id
+    @QueryHints(@QueryHint(name = HINT_CACHE_MODE, value = "IGNORE"))
+    @Query("select l from LoanApplication l"
+            + " where l.applicationDate is null"
+            + " and (:afterId is null or l.id < :afterId)"
+            + " and (:status is null or l.status = :status)"
+            + " order by l.id desc")
+    @Transactional(readOnly = true)
+    List<LoanApplication> findUndatedPage(@Param("afterId") Long afterId,
+                                          @Param("status") String status,
+                                          Pageable pageable);
+
+    // Same filters as findPage, but rows are pulled from a server-side cursor.
+    // Must be consumed inside a transaction and closed by the caller.
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("select l from LoanApplication l"
+            + " where (:status is null or l.status = :status)"
+            + " and (cast(:from as LocalDateTime) is null or l.applicationDate >= :from)"
+            + " and (cast(:to as LocalDateTime) is null or l.applicationDate < :to)"
+            + " order by l.applicationDate desc nulls last, l.id desc")
+    @Transactional(readOnly = true)
+    Stream<LoanApplication> streamAll(@Param("status") String status,
+                                      @Param("from") Date from,
+                                      @Param("to") Date to);
+
+    // Served by the partial index idx_loan_application_mpesa_message_date. A Slice
+    // reads one row past the page to tell whether another one follows.
+    @Query("select new com.example.loanapp.MpesaMessageView("
+            + "l.trackingId, l.name, l.phone, l.mpesaMessage, l.mpesaMessageDate, l.status)"
+            + " from LoanApplication l"
+            + " where l.mpesaMessage is not null"
+            + " order by l.mpesaMessageDate desc, l.id desc")
+    @Transactional(readOnly = true)
+    Slice<MpesaMessageView> findMpesaMessages(Pageable pageable);
+
+    // Single-loan partial updates: one statement touching only the columns
+    // that change (the mpesa_message TEXT is not written back with every
+    // offer or status change), whose result says whether a loan matched:
+    // no row or a count of 0 means none did. Native, with a query space no
+    // entity maps to, so Hibernate does not drop the whole loan-application
+    // cache region after each of them: callers evict the one loan they
+    // changed, by the id the statement returns.
+    String PARTIAL_UPDATE_SPACE = "loan_application_partial_update";
+
+    // The loan a partial update changed, with its values from before it
+    interface UpdatedLoan {
+        Long getId();
+        String getStatus();
+        String getLoanType();
+        Date getApplicationDate();
+        int getLoanAmount();
+        int getVerificationFee();
+    }
+
+    // A null amount or fee leaves that column as it is. The row is locked
+    // by the subquery, so the returned old values are the ones replaced.
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = PARTIAL_UPDATE_SPACE))
+    @Query(value = "UPDATE loan_application l"
+            + " SET loan_amount = COALESCE(CAST(:loanAmount AS integer), old.loan_amount),"
+            + " verification_fee = COALESCE(CAST(:verificationFee AS integer), old.verification_fee)"
+            + " FROM (SELECT id, loan_amount, verification_fee FROM loan_application"
+            + " WHERE tracking_id = :trackingId FOR UPDATE) old"
+            + " WHERE l.id = old.id"
+            + " RETURNING l.id AS \"id\", l.status AS \"status\", l.loan_type AS \"loanType\","
+            + " l.application_date AS \"applicationDate\", old.loan_amount AS \"loanAmount\","
+            + " old.verification_fee AS \"verificationFee\"", nativeQuery = true)
+    @Transactional
+    Optional<UpdatedLoan> updateOffer(@Param("trackingId") String trackingId,
+                                      @Param("loanAmount") Integer loanAmount,
+                                      @Param("verificationFee") Integer verificationFee);
+
+    // UpdatedLoan, plus the status the STK push left (a NEW or unset loan becomes PENDING)
+    interface StkPushedLoan extends UpdatedLoan {
+        String getNewStatus();
+    }
+
+    // Only the columns an accepted STK push sets, so nothing a callback, offer
+    // update or another instance wrote meanwhile is overwritten
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = PARTIAL_UPDATE_SPACE))
+    @Query(value = "UPDATE loan_application l"
+            + " SET loan_amount = :loanAmount, verification_fee = :verificationFee,"
+            + " checkout_requestid = :checkoutRequestID,"
+            + " status = CASE WHEN old.status IS NULL OR old.status = 'NEW' THEN 'PENDING' ELSE old.status END"
+            + " FROM (SELECT id, status, loan_amount, verification_fee FROM loan_application"
+            + " WHERE tracking_id = :trackingId FOR UPDATE) old"
+            + " WHERE l.id = old.id"
+            + " RETURNING l.id AS \"id\", old.status AS \"status\", l.status AS \"newStatus\","
+            + " l.loan_type AS \"loanType\", l.application_date AS \"applicationDate\","
+            + " old.loan_amount AS \"loanAmount\", old.verification_fee AS \"verificationFee\"", nativeQuery = true)
+    @Transactional
+    Optional<StkPushedLoan> updateStkPush(@Param("trackingId") String trackingId,
+                                          @Param("checkoutRequestID") String checkoutRequestID,
+                                          @Param("loanAmount") int loanAmount,
+                                          @Param("verificationFee") int verificationFee);
+
+    // Id of the updated loan
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = PARTIAL_UPDATE_SPACE))
+    @Query(value = "UPDATE loan_application SET mpesa_message = :mpesaMessage, mpesa_message_date = :mpesaMessageDate"
+            + " WHERE tracking_id = :trackingId RETURNING id", nativeQuery = true)
+    @Transactional
+    Optional<Long> updateMpesaMessage(@Param("trackingId") String trackingId,
+                                      @Param("mpesaMessage") String mpesaMessage,
+                                      @Param("mpesaMessageDate") Date mpesaMessageDate);
+
+    // Same match as CallbackIngestor: the reference is a CheckoutRequestID or,
+    // for User_Reference callbacks, a trackingId. 0 when the status is already set.
+    @Modifying
+    @QueryHints(@QueryHint(name = HINT_NATIVE_SPACES, value = PARTIAL_UPDATE_SPACE))
+    @Query(value = "UPDATE loan_application SET status = :status"
+            + " WHERE (checkout_requestid = :reference OR tracking_id = :reference)"
+            + " AND status IS DISTINCT FROM :status", nativeQuery = true)
+    @Transactional
+    int updateStatus(@Param("reference") String reference, @Param("status") String status);
 }
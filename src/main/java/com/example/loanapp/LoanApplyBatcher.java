@@ -0,0 +1,227 @@
+package com.example.loanapp;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+// =====================================================================
+// Write path of POST /apply
+//
+// LoanApplication ids come from a pooled sequence (one nextval per 50
+// ids), so Hibernate can send inserts as JDBC batches
+// (hibernate.jdbc.batch_size). With loan.apply.batching.enabled the
+// requests arriving together are also coalesced: a single worker takes
+// the first queued application, waits at most max-wait-ms for up to
+// max-batch-size - 1 more, and inserts them in one transaction, so a
+// burst costs one commit per batch instead of one per loan. Callers
+// block until their batch is committed and get their saved loan back.
+//
+// A batch that fails (tracking ID collision, bad row) is rolled back and
+// its loans are saved one by one, each with its own tracking ID retries.
+// When the queue is full the caller saves on its own thread.
+//
+// Metric: loan.apply.batch.size
+// =====================================================================
+@Component
+public class LoanApplyBatcher implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanApplyBatcher.class);
+
+    private static final int MAX_TRACKING_ID_ATTEMPTS = 3;
+
+    private final LoanApplicationRepository repository;
+    private final TrackingIdGenerator trackingIdGenerator;
+    private final LoanStats loanStats;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Pending> queue;
+    private final DistributionSummary batchSizes;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    private record Pending(LoanApplication application, CompletableFuture<LoanApplication> result) {
+    }
+
+    public LoanApplyBatcher(LoanApplicationRepository repository,
+                            TrackingIdGenerator trackingIdGenerator,
+                            LoanStats loanStats,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${loan.apply.batching.enabled}") boolean enabled,
+                            @Value("${loan.apply.batching.max-batch-size}") int maxBatchSize,
+                            @Value("${loan.apply.batching.max-wait-ms}") long maxWaitMs,
+                            @Value("${loan.apply.batching.queue-capacity}") int queueCapacity) {
+        this.repository = repository;
+        this.trackingIdGenerator = trackingIdGenerator;
+        this.loanStats = loanStats;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSizes = DistributionSummary.builder("loan.apply.batch.size")
+                .description("Applications inserted per transaction")
+                .register(meterRegistry);
+    }
+
+    // Inserts a new application and assigns its tracking ID
+    public LoanApplication save(LoanApplication application) {
+        if (!running) {
+            return saveOne(application);
+        }
+        Pending pending = new Pending(application, new CompletableFuture<>());
+        // Queued after shutdown drained the queue: nobody would write it
+        if (!queue.offer(pending) || (!running && queue.remove(pending))) {
+            return saveOne(application);
+        }
+        try {
+            return pending.result().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "loan-apply-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (worker == null) {
+            return;
+        }
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+
+        // Callers are still waiting on these
+        List<Pending> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            write(remaining);
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collect(batch, System.nanoTime() + maxWaitNanos);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                write(batch);
+                break;
+            } catch (Exception e) {
+                log.error("Apply writer failed on a batch of {}", batch.size(), e);
+                for (Pending pending : batch) {
+                    pending.result().completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Fills the batch until it is full or the first loan has waited long enough
+    private void collect(List<Pending> batch, long deadline) throws InterruptedException {
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long left = deadline - System.nanoTime();
+            if (batch.size() == maxBatchSize || left <= 0) {
+                return;
+            }
+            Pending next = queue.poll(left, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        batchSizes.record(batch.size());
+        List<LoanApplication> applications = batch.stream().map(Pending::application).toList();
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                for (LoanApplication application : applications) {
+                    application.setTrackingId(trackingIdGenerator.next());
+                }
+                repository.saveAll(applications);
+            });
+        } catch (Exception e) {
+            log.warn("Batched insert of {} applications failed, saving individually: {}",
+                    batch.size(), e.getMessage());
+            for (Pending pending : batch) {
+                try {
+                    pending.application().setId(null);
+                    pending.result().complete(saveOne(pending.application()));
+                } catch (Exception one) {
+                    pending.result().completeExceptionally(one);
+                }
+            }
+            return;
+        }
+        for (Pending pending : batch) {
+            loanStats.added(LoanStats.Row.of(pending.application()));
+            pending.result().complete(pending.application());
+        }
+    }
+
+    // Unique tracking ID, e.g. LON-C123456L9876543. The unique index is
+    // the last line of defence (clock jumps, misconfigured node ids).
+    private LoanApplication saveOne(LoanApplication application) {
+        for (int attempt = 1; ; attempt++) {
+            application.setTrackingId(trackingIdGenerator.next());
+            try {
+                LoanApplication saved = repository.save(application);
+                loanStats.added(LoanStats.Row.of(saved));
+                return saved;
+            } catch (DataIntegrityViolationException e) {
+                if (attempt == MAX_TRACKING_ID_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("Tracking ID collision, retrying: {}", application.getTrackingId());
+                application.setId(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.loanapp;
+
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// =====================================================================
+// Bulk offer updates and deletes for the back office
+//
+// Requests are cut into chunks of loan.bulk.chunk-size, one transaction
+// per chunk, so a large request neither holds one huge transaction nor
+// pays a round trip per loan:
+//   - offers: one JDBC batch of UPDATEs per chunk, the per-row update
+//     counts tell updated from not found;
+//   - deletes: one DELETE ... WHERE tracking_id = ANY(?) RETURNING per
+//     chunk.
+// Results come back per item, in request order. Offer chunks lock their
+// loans first so LoanStats gets the old amounts; deletes read them back
+// from RETURNING. Changed loans are evicted from the second-level cache
+// after commit, since these writes bypass Hibernate.
+// =====================================================================
+@Component
+public class LoanBulkOperations {
+
+    public static final String UPDATED = "updated";
+    public static final String DELETED = "deleted";
+    public static final String NOT_FOUND = "not_found";
+    public static final String INVALID = "invalid";
+
+    // null amount/fee keeps the current value, like the single update-offer endpoint
+    private static final String UPDATE_OFFER_SQL =
+            "UPDATE loan_application"
+                    + " SET loan_amount = COALESCE(?, loan_amount), verification_fee = COALESCE(?, verification_fee)"
+                    + " WHERE tracking_id = ?";
+
+    private static final String LOCK_SQL =
+            "SELECT id, tracking_id, status, loan_type, application_date, loan_amount, verification_fee"
+                    + " FROM loan_application WHERE tracking_id = ANY(?) FOR UPDATE";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM loan_application WHERE tracking_id = ANY(?)"
+                    + " RETURNING id, tracking_id, checkout_requestid, status, loan_type, application_date,"
+                    + " loan_amount, verification_fee";
+
+    // One requested offer change
+    public record OfferChange(String trackingId, Integer loanAmount, Integer verificationFee) {
+    }
+
+    // Per-item outcome: updated, deleted, not_found or invalid
+    public record ItemResult(String trackingId, String result) {
+    }
+
+    // Deleted loan, with what is needed to clean up in-memory state
+    public record DeletedLoan(String trackingId, String checkoutRequestID) {
+    }
+
+    public record DeleteResult(List<ItemResult> results, List<DeletedLoan> deleted) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LoanStats loanStats;
+    private final Cache loanCache;
+    private final int chunkSize;
+
+    public LoanBulkOperations(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              LoanStats loanStats,
+                              EntityManagerFactory entityManagerFactory,
+                              @Value("${loan.bulk.chunk-size}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.loanStats = loanStats;
+        this.loanCache = entityManagerFactory.getCache();
+        this.chunkSize = chunkSize;
+    }
+
+    public List<ItemResult> updateOffers(List<OfferChange> changes) {
+        List<ItemResult> results = new ArrayList<>(changes.size());
+
+        for (int from = 0; from < changes.size(); from += chunkSize) {
+            List<OfferChange> chunk = changes.subList(from, Math.min(from + chunkSize, changes.size()));
+            List<OfferChange> valid = new ArrayList<>(chunk.size());
+            for (OfferChange change : chunk) {
+                if (change.trackingId() != null && !change.trackingId().isBlank()) {
+                    valid.add(change);
+                }
+            }
+
+            Map<String, LoanStats.Row> before = new HashMap<>();
+            List<Long> lockedIds = new ArrayList<>();
+            int[] counts = valid.isEmpty() ? new int[0] : transactionTemplate.execute(tx -> {
+                before.putAll(lock(valid, lockedIds));
+                return jdbcTemplate.batchUpdate(UPDATE_OFFER_SQL, valid, valid.size(), (ps, change) -> {
+                    setNullableInt(ps, 1, change.loanAmount());
+                    setNullableInt(ps, 2, change.verificationFee());
+                    ps.setString(3, change.trackingId());
+                })[0];
+            });
+            lockedIds.forEach(id -> loanCache.evict(LoanApplication.class, id));
+
+            // Replay the changes in order, so a loan listed twice ends on its last values
+            Map<String, LoanStats.Row> after = new HashMap<>(before);
+            for (OfferChange change : valid) {
+                after.computeIfPresent(change.trackingId(), (id, row) -> new LoanStats.Row(
+                        row.status(), row.loanType(), row.day(),
+                        change.loanAmount() != null ? change.loanAmount() : row.loanAmount(),
+                        change.verificationFee() != null ? change.verificationFee() : row.verificationFee()));
+            }
+            before.forEach((trackingId, row) -> loanStats.changed(row, after.get(trackingId)));
+
+            int next = 0;
+            for (OfferChange change : chunk) {
+                if (change.trackingId() == null || change.trackingId().isBlank()) {
+                    results.add(new ItemResult(change.trackingId(), INVALID));
+                } else {
+                    results.add(new ItemResult(change.trackingId(), counts[next++] > 0 ? UPDATED : NOT_FOUND));
+                }
+            }
+        }
+        return results;
+    }
+
+    public DeleteResult deleteAll(List<String> trackingIds) {
+        List<ItemResult> results = new ArrayList<>(trackingIds.size());
+        List<DeletedLoan> deleted = new ArrayList<>();
+
+        for (int from = 0; from < trackingIds.size(); from += chunkSize) {
+            List<String> chunk = trackingIds.subList(from, Math.min(from + chunkSize, trackingIds.size()));
+            String[] ids = chunk.stream().filter(id -> id != null && !id.isBlank()).distinct().toArray(String[]::new);
+
+            Map<String, DeletedLoan> removed = new HashMap<>();
+            List<LoanStats.Row> rows = new ArrayList<>();
+            List<Long> removedIds = new ArrayList<>();
+            if (ids.length > 0) {
+                transactionTemplate.executeWithoutResult(tx -> jdbcTemplate.query(con -> {
+                    PreparedStatement ps = con.prepareStatement(DELETE_SQL);
+                    ps.setArray(1, con.createArrayOf("varchar", ids));
+                    return ps;
+                }, rs -> {
+                    DeletedLoan loan = new DeletedLoan(rs.getString("tracking_id"), rs.getString("checkout_requestid"));
+                    removed.put(loan.trackingId(), loan);
+                    rows.add(row(rs));
+                    removedIds.add(rs.getLong("id"));
+                }));
+            }
+            removedIds.forEach(id -> loanCache.evict(LoanApplication.class, id));
+            rows.forEach(loanStats::removed);
+
+            for (String trackingId : chunk) {
+                if (trackingId == null || trackingId.isBlank()) {
+                    results.add(new ItemResult(trackingId, INVALID));
+                    continue;
+                }
+                // remove(): a tracking ID listed twice is reported deleted only once
+                DeletedLoan loan = removed.remove(trackingId);
+                if (loan != null) {
+                    deleted.add(loan);
+                }
+                results.add(new ItemResult(trackingId, loan != null ? DELETED : NOT_FOUND));
+            }
+        }
+        return new DeleteResult(results, deleted);
+    }
+
+    private Map<String, LoanStats.Row> lock(List<OfferChange> changes, List<Long> lockedIds) {
+        String[] ids = changes.stream().map(OfferChange::trackingId).distinct().toArray(String[]::new);
+        Map<String, LoanStats.Row> rows = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(LOCK_SQL);
+            ps.setArray(1, con.createArrayOf("varchar", ids));
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            rows.put(rs.getString("tracking_id"), row(rs));
+            lockedIds.add(rs.getLong("id"));
+        });
+        return rows;
+    }
+
+    private static LoanStats.Row row(ResultSet rs) throws SQLException {
+        return new LoanStats.Row(rs.getString("status"), rs.getString("loan_type"),
+                LoanStats.Row.day(rs.getTimestamp("application_date")),
+                rs.getLong("loan_amount"), rs.getLong("verification_fee"));
+    }
+
+    private static void setNullableInt(PreparedStatement ps, int index, Integer value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.INTEGER);
+        } else {
+            ps.setInt(index, value);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.loanapp;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+// =====================================================================
+// Hibernate second-level cache for LoanApplication
+//
+// One JCache region, loan-application (loans by id), on the local heap
+// (Caffeine), bounded by loan.cache.max-size and expired
+// loan.cache.ttl-seconds after write. LoanApplicationLookupsImpl maps
+// trackingId and checkoutRequestID to ids in front of it.
+//
+// Hibernate keeps it in step with its own inserts, updates and
+// deletes; the JDBC write paths (CallbackIngestor, LoanBulkOperations)
+// evict the loans they touch. Each instance has its own copy, so a
+// change written by another instance is seen once the entry expires;
+// keep the TTL short when running more than one instance, or switch the
+// cache off with loan.cache.enabled=false.
+// =====================================================================
+@Configuration
+public class LoanCacheConfig {
+
+    static final String LOAN_REGION = "loan-application";
+
+    @Bean
+    public HibernatePropertiesCustomizer loanCacheCustomizer(
+            @Value("${loan.cache.enabled}") boolean enabled,
+            @Value("${loan.cache.max-size}") long maxSize,
+            @Value("${loan.cache.ttl-seconds}") long ttlSeconds) {
+        return properties -> {
+            properties.put("hibernate.cache.use_second_level_cache", enabled);
+            if (!enabled) {
+                return;
+            }
+            properties.put("hibernate.cache.region.factory_class", "jcache");
+            properties.put("hibernate.javax.cache.cache_manager", cacheManager(maxSize, ttlSeconds));
+            properties.put("hibernate.javax.cache.missing_cache_strategy", "fail");
+        };
+    }
+
+    private static CacheManager cacheManager(long maxSize, long ttlSeconds) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager();
+        if (cacheManager.getCache(LOAN_REGION) == null) {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(maxSize));
+            configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(ttlSeconds)));
+            cacheManager.createCache(LOAN_REGION, configuration);
+        }
+        return cacheManager;
+    }
+}
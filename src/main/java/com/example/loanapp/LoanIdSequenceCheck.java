@@ -0,0 +1,71 @@
+package com.example.loanapp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// =====================================================================
+// Refuses to start while loan_application_seq is behind the table
+//
+// LoanApplication.id takes blocks of ID_ALLOCATION_SIZE ids from the
+// sequence. On a database that predates the sequence, ddl-auto=update
+// creates it at 1, below the ids the old identity column handed out,
+// and every insert batch then fails on the primary key. The sequence is
+// moved past max(id) by db/indexes.sql, which is applied by hand, so
+// this check stops a deploy that skipped that step before it takes
+// traffic.
+// =====================================================================
+@Component
+public class LoanIdSequenceCheck implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanIdSequenceCheck.class);
+
+    private static final String STATE_SQL =
+            "SELECT s.last_value, s.is_called, (SELECT COALESCE(MAX(id), 0) FROM loan_application)"
+                    + " FROM loan_application_seq s";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${loan.id-sequence.check-on-startup:true}")
+    private boolean checkOnStartup = true;
+
+    public LoanIdSequenceCheck(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // Off only for the database-less CDS training run (application-cds-training.properties)
+        if (!checkOnStartup) {
+            return;
+        }
+        long[] state;
+        try {
+            state = jdbcTemplate.queryForObject(STATE_SQL, (rs, row) ->
+                    new long[] {rs.getLong(1), rs.getBoolean(2) ? 1 : 0, rs.getLong(3)});
+        } catch (DataAccessException e) {
+            throw new IllegalStateException("Cannot read loan_application_seq; apply db/indexes.sql"
+                    + " (see its header) before starting", e);
+        }
+        long lastValue = state[0];
+        boolean called = state[1] == 1;
+        long maxId = state[2];
+        if (!coversExistingIds(lastValue, called, maxId)) {
+            throw new IllegalStateException("loan_application_seq (last_value " + lastValue
+                    + ") is behind max(loan_application.id) " + maxId
+                    + "; new ids would collide. Apply db/indexes.sql (see its header) before starting");
+        }
+        log.info("loan_application_seq at {}, max id {}", lastValue, maxId);
+    }
+
+    // The next block handed to Hibernate's pooled optimizer starts above maxId:
+    // last_value + 1 once the sequence was called, last_value - size + 1 before
+    static boolean coversExistingIds(long lastValue, boolean called, long maxId) {
+        long firstNewId = called ? lastValue + 1 : lastValue - LoanApplication.ID_ALLOCATION_SIZE + 1;
+        return maxId == 0 || firstNewId > maxId;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.loanapp;
+
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+// Keyset cursor of GET /all/page: applicationDate and id of the last loan
+// of a page, as an opaque "<applicationDate>_<id>". The date is written
+// at full column precision in the JVM zone (like the column itself) and
+// left empty for loans without one.
+public record LoanPageCursor(Timestamp applicationDate, long id) {
+
+    // Sorts before every loan: where the first page starts
+    public static final LoanPageCursor FIRST =
+            new LoanPageCursor(Timestamp.valueOf("9999-12-31 00:00:00"), Long.MAX_VALUE);
+
+    public static LoanPageCursor of(LoanApplication loan) {
+        Date date = loan.getApplicationDate();
+        if (date == null || date instanceof Timestamp) {
+            return new LoanPageCursor((Timestamp) date, loan.getId());
+        }
+        return new LoanPageCursor(new Timestamp(date.getTime()), loan.getId());
+    }
+
+    public static LoanPageCursor decode(String cursor) {
+        int separator = cursor.lastIndexOf('_');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor);
+        }
+        try {
+            String date = cursor.substring(0, separator);
+            return new LoanPageCursor(date.isEmpty() ? null : Timestamp.valueOf(LocalDateTime.parse(date)),
+                    Long.parseLong(cursor.substring(separator + 1)));
+        } catch (DateTimeException | NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+        }
+    }
+
+    public String encode() {
+        return (applicationDate == null ? "" : applicationDate.toLocalDateTime().toString()) + "_" + id;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.loanapp;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// Result of matching a loan's saved M-Pesa SMS against its verification
+// fee, one row per loan, rewritten by every MpesaReconciliation run.
+@Data
+@Entity
+@Table(name = "loan_reconciliation",
+        indexes = @Index(name = "idx_loan_reconciliation_outcome", columnList = "outcome, tracking_id"))
+public class LoanReconciliation {
+
+    public static final String MATCHED = "MATCHED";
+    public static final String AMOUNT_MISMATCH = "AMOUNT_MISMATCH";
+    public static final String PHONE_MISMATCH = "PHONE_MISMATCH";
+    public static final String DUPLICATE_RECEIPT = "DUPLICATE_RECEIPT";
+    public static final String UNPARSEABLE = "UNPARSEABLE";
+
+    @Id
+    @Column(name = "tracking_id")
+    private String trackingId;
+
+    @Column(name = "receipt_code")
+    private String receiptCode;
+
+    // Amounts in cents: SMS amounts carry decimals, verificationFee does not
+    @Column(name = "amount_cents")
+    private Long amountCents;
+
+    @Column(name = "expected_cents")
+    private long expectedCents;
+
+    @Column(name = "paid_at")
+    private LocalDateTime paidAt;
+
+    private String phone;
+
+    private String outcome;
+
+    @Column(name = "checked_at")
+    private LocalDateTime checkedAt;
+}
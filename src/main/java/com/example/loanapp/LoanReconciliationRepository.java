@@ -0,0 +1,22 @@
+package com.example.loanapp;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface LoanReconciliationRepository extends JpaRepository<LoanReconciliation, String> {
+
+    // Keyset page on trackingId, served by idx_loan_reconciliation_outcome when filtered
+    @Query("select r from LoanReconciliation r"
+            + " where (:afterTrackingId is null or r.trackingId > :afterTrackingId)"
+            + " and (:outcome is null or r.outcome = :outcome)"
+            + " order by r.trackingId")
+    @Transactional(readOnly = true)
+    List<LoanReconciliation> findPage(@Param("afterTrackingId") String afterTrackingId,
+                                      @Param("outcome") String outcome,
+                                      Pageable pageable);
+}
@@ -0,0 +1,169 @@
+package com.example.loanapp;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+// =====================================================================
+// Admin search over name, phone, idNumber and trackingId
+//
+// Every predicate is a LIKE '%term%' (or a pg_trgm word-similarity match
+// for names) on an expression covered by a trigram GIN index from
+// db/indexes.sql, so Postgres answers with bitmap index scans instead of
+// reading the table. Phones are compared in the local 9 digit form
+// (7XXXXXXXX), so 07..., 7..., 254... and +254... all find the same loan.
+//
+// Matches are ranked: exact > prefix > contains, fuzzy name matches by
+// their word similarity. Candidates are collected per tier, each capped
+// at search.max-candidates: exact matches, prefix matches, then contains
+// and fuzzy ones. A broad term only truncates its own tier, so exact and
+// prefix hits are always ranked and very broad terms stay cheap.
+// =====================================================================
+@Component
+public class LoanSearch {
+
+    public static final int MIN_TERM_LENGTH = 3;
+
+    // Must stay identical to the idx_loan_application_phone_trgm expression
+    static final String PHONE_EXPR =
+            "regexp_replace(regexp_replace(phone, '[^0-9]', '', 'g'), '^(254|0)', '')";
+
+    private static final String NAME_EXPR = "lower(name)";
+
+    public record Hit(String trackingId, String name, String phone, String idNumber,
+                      String loanType, String status, Date applicationDate, double score) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTx;
+    private final int maxCandidates;
+
+    public LoanSearch(JdbcTemplate jdbcTemplate,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${search.max-candidates}") int maxCandidates) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.maxCandidates = maxCandidates;
+    }
+
+    public int maxCandidates() {
+        return maxCandidates;
+    }
+
+    public List<Hit> search(String term, int offset, int limit) {
+        String text = term.trim();
+        String lower = text.toLowerCase(Locale.ROOT);
+        String digits = text.replaceAll("[^0-9]", "");
+        String phone = localPhone(digits);
+        boolean hasLetters = text.chars().anyMatch(Character::isLetter);
+
+        List<String> scores = new ArrayList<>();
+        List<Object> scoreArgs = new ArrayList<>();
+        Tier exact = new Tier();
+        Tier prefix = new Tier();
+        Tier contains = new Tier();
+
+        // Tracking IDs are stored upper-case (LON-C123456L9876543)
+        String tracking = text.toUpperCase(Locale.ROOT);
+        rank(scores, scoreArgs, "tracking_id", tracking);
+        match(exact, prefix, contains, "tracking_id", tracking);
+
+        if (digits.length() >= MIN_TERM_LENGTH) {
+            rank(scores, scoreArgs, "id_number", digits);
+            match(exact, prefix, contains, "id_number", digits);
+        }
+        if (phone.length() >= MIN_TERM_LENGTH) {
+            rank(scores, scoreArgs, PHONE_EXPR, phone);
+            match(exact, prefix, contains, PHONE_EXPR, phone);
+        }
+        if (hasLetters) {
+            scores.add("CASE WHEN " + NAME_EXPR + " = ? THEN 1.0 WHEN " + NAME_EXPR + " LIKE ? THEN 0.85"
+                    + " WHEN " + NAME_EXPR + " LIKE ? THEN 0.7 ELSE word_similarity(?, " + NAME_EXPR + ") * 0.6 END");
+            scoreArgs.add(lower);
+            scoreArgs.add(prefix(lower));
+            scoreArgs.add(contains(lower));
+            scoreArgs.add(lower);
+            match(exact, prefix, contains, NAME_EXPR, lower);
+            contains.add("? <% " + NAME_EXPR, lower);
+        }
+
+        String sql = "SELECT tracking_id, name, phone, id_number, loan_type, status, application_date,"
+                + " GREATEST(" + String.join(", ", scores) + ") AS score"
+                + " FROM loan_application WHERE id IN ("
+                + exact.sql() + " UNION ALL " + prefix.sql() + " UNION ALL " + contains.sql() + ")"
+                + " ORDER BY score DESC, id DESC LIMIT ? OFFSET ?";
+
+        List<Object> args = new ArrayList<>(scoreArgs);
+        for (Tier tier : List.of(exact, prefix, contains)) {
+            args.addAll(tier.args);
+            args.add(maxCandidates);
+        }
+        args.add(limit);
+        args.add(offset);
+
+        return readOnlyTx.execute(tx -> jdbcTemplate.query(sql, (rs, n) -> new Hit(
+                rs.getString("tracking_id"), rs.getString("name"), rs.getString("phone"),
+                rs.getString("id_number"), rs.getString("loan_type"), rs.getString("status"),
+                rs.getTimestamp("application_date"), rs.getDouble("score")), args.toArray()));
+    }
+
+    // Ids matching any of a tier's predicates, at most max-candidates of them
+    private static final class Tier {
+        final List<String> filters = new ArrayList<>();
+        final List<Object> args = new ArrayList<>();
+
+        void add(String filter, Object arg) {
+            filters.add(filter);
+            args.add(arg);
+        }
+
+        String sql() {
+            return "(SELECT id FROM loan_application WHERE " + String.join(" OR ", filters) + " LIMIT ?)";
+        }
+    }
+
+    private static void match(Tier exact, Tier prefix, Tier contains, String column, String value) {
+        exact.add(column + " = ?", value);
+        prefix.add(column + " LIKE ?", prefix(value));
+        contains.add(column + " LIKE ?", contains(value));
+    }
+
+    private static void rank(List<String> scores, List<Object> args, String column, String value) {
+        scores.add("CASE WHEN " + column + " = ? THEN 1.0 WHEN " + column + " LIKE ? THEN 0.8"
+                + " WHEN " + column + " LIKE ? THEN 0.5 ELSE 0 END");
+        args.add(value);
+        args.add(prefix(value));
+        args.add(contains(value));
+    }
+
+    // Same normalization as PHONE_EXPR: digits only, without 254 or the leading 0
+    static String localPhone(String digits) {
+        if (digits.startsWith("254")) {
+            return digits.substring(3);
+        }
+        if (digits.startsWith("0")) {
+            return digits.substring(1);
+        }
+        return digits;
+    }
+
+    private static String prefix(String value) {
+        return escapeLike(value) + "%";
+    }
+
+    private static String contains(String value) {
+        return "%" + escapeLike(value) + "%";
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
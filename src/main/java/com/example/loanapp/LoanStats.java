@@ -0,0 +1,165 @@
+package com.example.loanapp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// =====================================================================
+// Dashboard aggregates, kept in memory
+//
+// Loans are counted per (status, loanType, applicationDate day) bucket,
+// with running sums of loanAmount and verificationFee. The buckets are
+// loaded from one GROUP BY query before the web server starts and then
+// moved along by every write path (apply, stk-push, callbacks, offer
+// updates, deletes, bulk operations) once its change is committed.
+// Reading the stats costs O(buckets), not O(loans).
+//
+// Single instance only: each instance sees its own writes and nothing
+// else, so with several instances behind a load balancer every one of
+// them drifts from the database until it restarts. Run one instance, or
+// route /stats to an instance that takes all writes, until the buckets
+// are kept somewhere shared. Direct SQL edits are not seen either.
+// =====================================================================
+@Component
+public class LoanStats implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(LoanStats.class);
+
+    // application_date is a timestamp without time zone written in the JVM
+    // zone, so the cast to date gives the same day as Row.day()
+    private static final String AGGREGATE_SQL =
+            "SELECT status, loan_type, CAST(application_date AS date) AS day, COUNT(*),"
+                    + " COALESCE(SUM(loan_amount), 0), COALESCE(SUM(verification_fee), 0)"
+                    + " FROM loan_application GROUP BY 1, 2, 3";
+
+    // What one loan contributes to the aggregates
+    public record Row(String status, String loanType, LocalDate day, long loanAmount, long verificationFee) {
+
+        public static Row of(LoanApplication loan) {
+            return new Row(loan.getStatus(), loan.getLoanType(), day(loan.getApplicationDate()),
+                    loan.getLoanAmount(), loan.getVerificationFee());
+        }
+
+        public static LocalDate day(Date date) {
+            if (date == null) {
+                return null;
+            }
+            if (date instanceof Timestamp timestamp) {
+                return timestamp.toLocalDateTime().toLocalDate();
+            }
+            return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+        }
+
+        Key key() {
+            return new Key(status, loanType, day);
+        }
+    }
+
+    public record Bucket(String status, String loanType, LocalDate day,
+                         long count, long loanAmount, long verificationFee) {
+    }
+
+    private record Key(String status, String loanType, LocalDate day) {
+    }
+
+    private static final class Totals {
+        final LongAdder count = new LongAdder();
+        final LongAdder loanAmount = new LongAdder();
+        final LongAdder verificationFee = new LongAdder();
+
+        void add(long loans, long amount, long fee) {
+            count.add(loans);
+            loanAmount.add(amount);
+            verificationFee.add(fee);
+        }
+    }
+
+    private final Map<Key, Totals> buckets = new ConcurrentHashMap<>();
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${loan.stats.load-on-startup:true}")
+    private boolean loadOnStartup = true;
+
+    public LoanStats(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        // Off only for the database-less CDS training run (application-cds-training.properties)
+        if (!loadOnStartup) {
+            return;
+        }
+        long start = System.nanoTime();
+        jdbcTemplate.query(AGGREGATE_SQL, rs -> {
+            java.sql.Date day = rs.getDate(3);
+            totals(new Key(rs.getString(1), rs.getString(2), day != null ? day.toLocalDate() : null))
+                    .add(rs.getLong(4), rs.getLong(5), rs.getLong(6));
+        });
+        log.info("Loan stats loaded: {} buckets in {} ms",
+                buckets.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public void added(Row row) {
+        totals(row.key()).add(1, row.loanAmount(), row.verificationFee());
+    }
+
+    public void removed(Row row) {
+        totals(row.key()).add(-1, -row.loanAmount(), -row.verificationFee());
+    }
+
+    public void changed(Row before, Row after) {
+        if (!before.equals(after)) {
+            removed(before);
+            added(after);
+        }
+    }
+
+    // Non-empty buckets, optionally limited to an inclusive day range.
+    // Loans without an application date only show up when no range is given.
+    public List<Bucket> buckets(LocalDate from, LocalDate to) {
+        List<Bucket> result = new ArrayList<>();
+        buckets.forEach((key, totals) -> {
+            long count = totals.count.sum();
+            if (count == 0) {
+                return;
+            }
+            if ((from != null || to != null) && key.day() == null) {
+                return;
+            }
+            if ((from != null && key.day().isBefore(from)) || (to != null && key.day().isAfter(to))) {
+                return;
+            }
+            result.add(new Bucket(key.status(), key.loanType(), key.day(),
+                    count, totals.loanAmount.sum(), totals.verificationFee.sum()));
+        });
+        result.sort(Comparator.comparing(Bucket::day, Comparator.nullsLast(Comparator.reverseOrder()))
+                .thenComparing(Bucket::status, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(Bucket::loanType, Comparator.nullsLast(Comparator.naturalOrder())));
+        return result;
+    }
+
+    private Totals totals(Key key) {
+        Totals totals = buckets.get(key);
+        return totals != null ? totals : buckets.computeIfAbsent(key, k -> new Totals());
+    }
+
+    static String label(Object value) {
+        return Objects.toString(value, "UNKNOWN");
+    }
+}
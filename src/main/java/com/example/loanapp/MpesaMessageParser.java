@@ -0,0 +1,356 @@
+package com.example.loanapp;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+
+// =====================================================================
+// Single-pass parser for M-Pesa confirmation SMS text, e.g.
+//
+//   SGH7XK2L9P Confirmed. Ksh150.00 sent to KOPESHA LTD for account
+//   LON-C123456L9876543 on 14/3/25 at 10:15 AM New M-PESA balance is
+//   Ksh2,345.00. Transaction cost, Ksh0.00.
+//
+// The message is walked once, word by word, without regexes or
+// substrings. Extracted: receipt code (first 10 character upper-case
+// code with letters and digits), amount in cents (first Ksh/KES amount
+// that is not a balance), date/time ("on d/M/yy at h:mm AM") and phone
+// (first Kenyan mobile number, normalised to 2547XXXXXXXX like
+// LoanApplicationController.formatPhone). Fields not found stay null.
+// =====================================================================
+public final class MpesaMessageParser {
+
+    private static final int RECEIPT_LENGTH = 10;
+
+    public record Receipt(String receiptCode, Long amountCents, LocalDateTime paidAt, String phone) {
+    }
+
+    private MpesaMessageParser() {
+    }
+
+    public static Receipt parse(CharSequence text) {
+        if (text == null) {
+            return new Receipt(null, null, null, null);
+        }
+
+        String receipt = null;
+        long amount = -1;
+        String phone = null;
+        int day = -1, month = -1, year = -1, hour = -1, minute = -1;
+
+        boolean currencyPending = false; // "Ksh" on its own, amount in the next word
+        boolean afterBalance = false;    // the amount after "balance" is not the paid amount
+        boolean afterOn = false;
+        boolean afterAt = false;
+        boolean meridiemPending = false;
+
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            int end = trimPunctuation(text, start, i);
+            if (start >= end) {
+                continue;
+            }
+
+            if (meridiemPending) {
+                meridiemPending = false;
+                int shift = meridiem(text, start, end);
+                if (shift >= 0) {
+                    hour = hour % 12 + shift;
+                    continue;
+                }
+            }
+
+            if (receipt == null && isReceiptCode(text, start, end)) {
+                receipt = text.subSequence(start, end).toString();
+                continue;
+            }
+
+            if (amount < 0) {
+                int digitsFrom = currencyPending ? start : currencyPrefixEnd(text, start, end);
+                if (digitsFrom >= 0) {
+                    currencyPending = digitsFrom == end;
+                    if (currencyPending) {
+                        continue;
+                    }
+                    long cents = parseAmount(text, digitsFrom, end);
+                    if (cents >= 0) {
+                        if (afterBalance) {
+                            afterBalance = false;
+                        } else {
+                            amount = cents;
+                        }
+                        continue;
+                    }
+                }
+            }
+
+            if (afterOn && day < 0) {
+                afterOn = false;
+                int[] date = parseDate(text, start, end);
+                if (date != null) {
+                    day = date[0];
+                    month = date[1];
+                    year = date[2];
+                    continue;
+                }
+            }
+
+            if (afterAt && hour < 0) {
+                afterAt = false;
+                int[] time = parseTime(text, start, end);
+                if (time != null) {
+                    hour = time[0];
+                    minute = time[1];
+                    if (time[2] >= 0) {
+                        hour = hour % 12 + time[2];
+                    } else {
+                        meridiemPending = true;
+                    }
+                    continue;
+                }
+            }
+
+            if (phone == null) {
+                phone = parsePhone(text, start, end);
+                if (phone != null) {
+                    continue;
+                }
+            }
+
+            afterOn = equalsIgnoreCase(text, start, end, "on");
+            afterAt = equalsIgnoreCase(text, start, end, "at");
+            if (equalsIgnoreCase(text, start, end, "balance")) {
+                afterBalance = true;
+            }
+        }
+
+        return new Receipt(receipt, amount >= 0 ? amount : null, timestamp(year, month, day, hour, minute), phone);
+    }
+
+    // Accepts 07XXXXXXXX, 01XXXXXXXX, 2547XXXXXXXX, 2541XXXXXXXX, with an optional '+'
+    public static String normalizePhone(CharSequence text, int start, int end) {
+        if (start < end && text.charAt(start) == '+') {
+            start++;
+        }
+        int digits = end - start;
+        for (int i = start; i < end; i++) {
+            if (!isDigit(text.charAt(i))) {
+                return null;
+            }
+        }
+        if (digits == 10 && text.charAt(start) == '0' && isMobilePrefix(text.charAt(start + 1))) {
+            return "254" + text.subSequence(start + 1, end);
+        }
+        if (digits == 9 && isMobilePrefix(text.charAt(start))) {
+            return "254" + text.subSequence(start, end);
+        }
+        if (digits == 12 && text.charAt(start) == '2' && text.charAt(start + 1) == '5'
+                && text.charAt(start + 2) == '4' && isMobilePrefix(text.charAt(start + 3))) {
+            return text.subSequence(start, end).toString();
+        }
+        return null;
+    }
+
+    public static String normalizePhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        StringBuilder compact = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c != ' ' && c != '-') {
+                compact.append(c);
+            }
+        }
+        return normalizePhone(compact, 0, compact.length());
+    }
+
+    private static String parsePhone(CharSequence text, int start, int end) {
+        // Masked numbers (2547******12) and other digit runs are not phones
+        int digits = end - start;
+        return digits >= 9 && digits <= 13 ? normalizePhone(text, start, end) : null;
+    }
+
+    private static boolean isReceiptCode(CharSequence text, int start, int end) {
+        if (end - start != RECEIPT_LENGTH) {
+            return false;
+        }
+        boolean letter = false, digit = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                letter = true;
+            } else if (isDigit(c)) {
+                digit = true;
+            } else {
+                return false;
+            }
+        }
+        return letter && digit;
+    }
+
+    // End of a leading "Ksh"/"KES" (case-insensitive), or -1
+    private static int currencyPrefixEnd(CharSequence text, int start, int end) {
+        if (end - start < 3) {
+            return -1;
+        }
+        if (regionMatches(text, start, "ksh") || regionMatches(text, start, "kes")) {
+            int from = start + 3;
+            if (from < end && text.charAt(from) == '.') {
+                from++;
+            }
+            return from;
+        }
+        return -1;
+    }
+
+    // "1,500.00" -> 150000; -1 if the word is not an amount
+    private static long parseAmount(CharSequence text, int start, int end) {
+        long whole = 0;
+        long cents = 0;
+        int decimals = -1;
+        boolean any = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (isDigit(c)) {
+                any = true;
+                if (decimals < 0) {
+                    whole = whole * 10 + (c - '0');
+                } else if (decimals < 2) {
+                    cents = cents * 10 + (c - '0');
+                    decimals++;
+                } else {
+                    return -1;
+                }
+            } else if (c == ',' && decimals < 0) {
+                continue;
+            } else if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                return -1;
+            }
+        }
+        if (!any) {
+            return -1;
+        }
+        if (decimals == 1) {
+            cents *= 10;
+        }
+        return whole * 100 + cents;
+    }
+
+    // d/M/yy or d/M/yyyy -> {day, month, year}
+    private static int[] parseDate(CharSequence text, int start, int end) {
+        int[] parts = new int[3];
+        int part = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (isDigit(c)) {
+                parts[part] = parts[part] * 10 + (c - '0');
+                digits++;
+            } else if (c == '/' && part < 2 && digits > 0) {
+                part++;
+                digits = 0;
+            } else {
+                return null;
+            }
+        }
+        if (part != 2 || digits == 0) {
+            return null;
+        }
+        if (digits <= 2) {
+            parts[2] += 2000;
+        }
+        return parts;
+    }
+
+    // h:mm, optionally followed by AM/PM in the same word -> {hour, minute, meridiem shift or -1}
+    private static int[] parseTime(CharSequence text, int start, int end) {
+        int hour = 0, minute = 0;
+        int i = start;
+        int digits = 0;
+        while (i < end && isDigit(text.charAt(i))) {
+            hour = hour * 10 + (text.charAt(i++) - '0');
+            digits++;
+        }
+        if (digits == 0 || digits > 2 || i >= end || text.charAt(i++) != ':') {
+            return null;
+        }
+        digits = 0;
+        while (i < end && isDigit(text.charAt(i))) {
+            minute = minute * 10 + (text.charAt(i++) - '0');
+            digits++;
+        }
+        if (digits != 2) {
+            return null;
+        }
+        if (i == end) {
+            return new int[] { hour, minute, -1 };
+        }
+        int shift = meridiem(text, i, end);
+        return shift >= 0 ? new int[] { hour, minute, shift } : null;
+    }
+
+    // 0 for AM, 12 for PM, -1 otherwise
+    private static int meridiem(CharSequence text, int start, int end) {
+        if (end - start != 2 || Character.toLowerCase(text.charAt(start + 1)) != 'm') {
+            return -1;
+        }
+        char c = Character.toLowerCase(text.charAt(start));
+        return c == 'a' ? 0 : c == 'p' ? 12 : -1;
+    }
+
+    private static LocalDateTime timestamp(int year, int month, int day, int hour, int minute) {
+        if (year < 0) {
+            return null;
+        }
+        try {
+            return LocalDateTime.of(year, month, day, Math.max(hour, 0), Math.max(minute, 0));
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static int trimPunctuation(CharSequence text, int start, int end) {
+        while (end > start) {
+            char c = text.charAt(end - 1);
+            if (c != '.' && c != ',' && c != ';' && c != ':' && c != ')') {
+                break;
+            }
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean equalsIgnoreCase(CharSequence text, int start, int end, String word) {
+        return end - start == word.length() && regionMatches(text, start, word);
+    }
+
+    private static boolean regionMatches(CharSequence text, int start, String lowerCase) {
+        if (text.length() - start < lowerCase.length()) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isMobilePrefix(char c) {
+        return c == '7' || c == '1';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
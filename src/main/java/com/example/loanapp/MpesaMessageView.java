@@ -0,0 +1,15 @@
+package com.example.loanapp;
+
+import java.util.Date;
+
+// Read model for /mpesa-messages: only the columns the endpoint returns,
+// filled directly by a constructor expression in the repository query.
+public record MpesaMessageView(
+        String trackingId,
+        String name,
+        String phone,
+        String mpesaMessage,
+        Date date,
+        String status
+) {
+}
@@ -0,0 +1,250 @@
+package com.example.loanapp;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// =====================================================================
+// M-Pesa SMS reconciliation
+//
+// Walks every loan with a saved mpesaMessage in keyset chunks of
+// mpesa.reconciliation.chunk-size (id > last id, no OFFSET), parses the
+// SMS with MpesaMessageParser and checks it against verificationFee and
+// the loan's phone. Chunks are parsed and upserted into
+// loan_reconciliation by a pool of workers, one JDBC batch per chunk;
+// at most two chunks per worker are in flight, so memory stays flat
+// whatever the table size.
+//
+// After the scan, receipts used by more than one loan are flagged
+// DUPLICATE_RECEIPT and rows of loans that are gone (or lost their
+// message) are deleted. Only one run at a time.
+// =====================================================================
+@Component
+public class MpesaReconciliation implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(MpesaReconciliation.class);
+
+    private static final String SCAN_SQL =
+            "SELECT id, tracking_id, phone, verification_fee, mpesa_message FROM loan_application"
+                    + " WHERE mpesa_message IS NOT NULL AND id > ? ORDER BY id LIMIT ?";
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO loan_reconciliation"
+                    + " (tracking_id, receipt_code, amount_cents, expected_cents, paid_at, phone, outcome, checked_at)"
+                    + " VALUES (?, ?, ?, ?, ?, ?, ?, ?)"
+                    + " ON CONFLICT (tracking_id) DO UPDATE SET receipt_code = EXCLUDED.receipt_code,"
+                    + " amount_cents = EXCLUDED.amount_cents, expected_cents = EXCLUDED.expected_cents,"
+                    + " paid_at = EXCLUDED.paid_at, phone = EXCLUDED.phone, outcome = EXCLUDED.outcome,"
+                    + " checked_at = EXCLUDED.checked_at";
+
+    private static final String DUPLICATES_SQL =
+            "UPDATE loan_reconciliation SET outcome = '" + LoanReconciliation.DUPLICATE_RECEIPT + "'"
+                    + " WHERE checked_at = ? AND receipt_code IN (SELECT receipt_code FROM loan_reconciliation"
+                    + " WHERE checked_at = ? AND receipt_code IS NOT NULL GROUP BY receipt_code HAVING COUNT(*) > 1)";
+
+    private static final String STALE_SQL = "DELETE FROM loan_reconciliation WHERE checked_at < ?";
+
+    private static final String SUMMARY_SQL = "SELECT outcome, COUNT(*) FROM loan_reconciliation GROUP BY outcome";
+
+    public record Run(String state, LocalDateTime startedAt, LocalDateTime finishedAt,
+                      long scanned, Map<String, Long> outcomes, String error) {
+    }
+
+    private record Candidate(long id, String trackingId, String phone, int verificationFee, String message) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate writeTx;
+    private final TransactionTemplate readOnlyTx;
+    private final Timer runTimer;
+    private final int chunkSize;
+    private final int threads;
+
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "mpesa-reconciliation");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicReference<Run> lastRun = new AtomicReference<>(
+            new Run("IDLE", null, null, 0, Map.of(), null));
+
+    public MpesaReconciliation(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${mpesa.reconciliation.chunk-size}") int chunkSize,
+                               @Value("${mpesa.reconciliation.threads}") int threads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.runTimer = Timer.builder("mpesa.reconciliation")
+                .description("Duration of a full M-Pesa SMS reconciliation run")
+                .register(meterRegistry);
+        this.chunkSize = chunkSize;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    public Run lastRun() {
+        return lastRun.get();
+    }
+
+    // Starts a run in the background; false if one is already running.
+    // A CAS rather than a monitor, so callers on virtual threads never pin.
+    public boolean start() {
+        Run previous = lastRun.get();
+        if ("RUNNING".equals(previous.state())) {
+            return false;
+        }
+        // Same timestamp on every row of the run, at the column's microsecond precision
+        LocalDateTime startedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        if (!lastRun.compareAndSet(previous, new Run("RUNNING", startedAt, null, 0, Map.of(), null))) {
+            return false;
+        }
+        coordinator.execute(() -> run(startedAt));
+        return true;
+    }
+
+    private void run(LocalDateTime startedAt) {
+        long start = System.nanoTime();
+        AtomicLong scanned = new AtomicLong();
+        try {
+            scan(startedAt, scanned);
+
+            int duplicates = writeTx.execute(tx -> jdbcTemplate.update(DUPLICATES_SQL,
+                    Timestamp.valueOf(startedAt), Timestamp.valueOf(startedAt)));
+            int stale = writeTx.execute(tx -> jdbcTemplate.update(STALE_SQL, Timestamp.valueOf(startedAt)));
+
+            Map<String, Long> outcomes = new LinkedHashMap<>();
+            jdbcTemplate.query(SUMMARY_SQL, rs -> {
+                outcomes.put(rs.getString(1), rs.getLong(2));
+            });
+            lastRun.set(new Run("COMPLETED", startedAt, LocalDateTime.now(), scanned.get(), outcomes, null));
+            log.info("M-Pesa reconciliation done: {} messages in {} ms, {} duplicate receipts, {} stale rows removed",
+                    scanned.get(), (System.nanoTime() - start) / 1_000_000, duplicates, stale);
+        } catch (Exception e) {
+            log.error("M-Pesa reconciliation failed after {} messages", scanned.get(), e);
+            lastRun.set(new Run("FAILED", startedAt, LocalDateTime.now(), scanned.get(), Map.of(), e.getMessage()));
+        } finally {
+            runTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void scan(LocalDateTime startedAt, AtomicLong scanned) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "mpesa-reconciliation-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Semaphore inFlight = new Semaphore(threads * 2);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        try {
+            long lastId = 0;
+            while (failure.get() == null) {
+                long afterId = lastId;
+                List<Candidate> chunk = readOnlyTx.execute(tx -> jdbcTemplate.query(SCAN_SQL,
+                        (rs, n) -> new Candidate(rs.getLong("id"), rs.getString("tracking_id"),
+                                rs.getString("phone"), rs.getInt("verification_fee"), rs.getString("mpesa_message")),
+                        afterId, chunkSize));
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                lastId = chunk.get(chunk.size() - 1).id();
+                scanned.addAndGet(chunk.size());
+
+                inFlight.acquire();
+                workers.execute(() -> {
+                    try {
+                        reconcile(chunk, startedAt);
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+                if (chunk.size() < chunkSize) {
+                    break;
+                }
+            }
+            // Wait for the last chunks
+            inFlight.acquire(threads * 2);
+        } finally {
+            workers.shutdownNow();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private void reconcile(List<Candidate> chunk, LocalDateTime checkedAt) {
+        List<LoanReconciliation> results = new ArrayList<>(chunk.size());
+        for (Candidate candidate : chunk) {
+            MpesaMessageParser.Receipt receipt = MpesaMessageParser.parse(candidate.message());
+
+            LoanReconciliation result = new LoanReconciliation();
+            result.setTrackingId(candidate.trackingId());
+            result.setReceiptCode(receipt.receiptCode());
+            result.setAmountCents(receipt.amountCents());
+            result.setExpectedCents(candidate.verificationFee() * 100L);
+            result.setPaidAt(receipt.paidAt());
+            result.setPhone(receipt.phone());
+            result.setOutcome(outcome(receipt, result.getExpectedCents(), candidate.phone()));
+            result.setCheckedAt(checkedAt);
+            results.add(result);
+        }
+
+        writeTx.executeWithoutResult(tx -> jdbcTemplate.batchUpdate(UPSERT_SQL, results, results.size(),
+                (ps, result) -> {
+                    ps.setString(1, result.getTrackingId());
+                    ps.setString(2, result.getReceiptCode());
+                    ps.setObject(3, result.getAmountCents(), Types.BIGINT);
+                    ps.setLong(4, result.getExpectedCents());
+                    ps.setObject(5, result.getPaidAt() != null ? Timestamp.valueOf(result.getPaidAt()) : null,
+                            Types.TIMESTAMP);
+                    ps.setString(6, result.getPhone());
+                    ps.setString(7, result.getOutcome());
+                    ps.setTimestamp(8, Timestamp.valueOf(result.getCheckedAt()));
+                }));
+    }
+
+    static String outcome(MpesaMessageParser.Receipt receipt, long expectedCents, String loanPhone) {
+        if (receipt.receiptCode() == null || receipt.amountCents() == null) {
+            return LoanReconciliation.UNPARSEABLE;
+        }
+        if (receipt.amountCents() != expectedCents) {
+            return LoanReconciliation.AMOUNT_MISMATCH;
+        }
+        // Sent-money SMS carry no phone: only a phone that is there can mismatch
+        String expectedPhone = MpesaMessageParser.normalizePhone(loanPhone);
+        if (receipt.phone() != null && expectedPhone != null && !receipt.phone().equals(expectedPhone)) {
+            return LoanReconciliation.PHONE_MISMATCH;
+        }
+        return LoanReconciliation.MATCHED;
+    }
+
+    @Override
+    public void destroy() {
+        coordinator.shutdownNow();
+    }
+}
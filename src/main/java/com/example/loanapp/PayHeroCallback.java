@@ -0,0 +1,28 @@
+package com.example.loanapp;
+
+// A PayHero callback reduced to what we act on. "reference" is the
+// CheckoutRequestID, or the User_Reference when PayHero sends that instead.
+// Built by PayHeroCallbackDecoder.
+public record PayHeroCallback(String reference, int resultCode, String resultDesc) {
+
+    public static final int RESULT_SUCCESS = 0;
+    public static final int RESULT_CANCELLED = 1032;
+
+    // Loan status this callback moves the loan to
+    public String loanStatus() {
+        return switch (resultCode) {
+            case RESULT_SUCCESS -> "PAID";
+            case RESULT_CANCELLED -> "CANCELLED";
+            default -> "FAILED";
+        };
+    }
+
+    // Status reported to the frontend: success, cancelled or failed
+    public String paymentStatus() {
+        return switch (resultCode) {
+            case RESULT_SUCCESS -> "success";
+            case RESULT_CANCELLED -> "cancelled";
+            default -> "failed";
+        };
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.loanapp;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+// =====================================================================
+// PayHero callback decoder
+//
+// Reads the raw body once with Jackson's streaming parser, keeping only
+// the fields we act on and skipping everything else, so no Map or
+// JsonNode tree is built per callback. PayHero uses three layouts:
+//
+//   { "CheckoutRequestID": "ws_CO_...", "ResultCode": 0, "ResultDesc": "..." }
+//   { "User_Reference": "...", "status": true|false }
+//   { "response": { "CheckoutRequestID": ..., "ResultCode": ..., "ResultDesc": ... } }
+//   { "response": { "User_Reference": ..., "Status": "Success"|"Failed", "ResultDesc": ... } }
+//
+// When several are present the first one in this list wins, whatever
+// the key order in the body.
+// =====================================================================
+@Component
+public class PayHeroCallbackDecoder {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    // Thrown for bodies that are not a JSON object or carry unusable values
+    public static class InvalidCallbackException extends RuntimeException {
+        public InvalidCallbackException(String message) {
+            super(message);
+        }
+    }
+
+    // Fields collected while reading one object level
+    private static final class Fields {
+        String checkoutRequestID;
+        Integer resultCode;
+        String resultDesc;
+        String userReference;
+        boolean statusFalse;  // top level "status": false
+        String status;        // response."Status"
+    }
+
+    // Returns null when the body is valid JSON but has no CheckoutRequestID/User_Reference
+    public PayHeroCallback decode(byte[] body) {
+        if (body == null || body.length == 0) {
+            throw new InvalidCallbackException("Empty callback body");
+        }
+
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new InvalidCallbackException("Callback body is not a JSON object");
+            }
+
+            Fields top = new Fields();
+            Fields wrapped = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("response".equals(name) && value == JsonToken.START_OBJECT) {
+                    wrapped = new Fields();
+                    readFields(parser, wrapped);
+                } else {
+                    readField(parser, name, value, top);
+                }
+            }
+
+            if (top.checkoutRequestID != null) {
+                return new PayHeroCallback(top.checkoutRequestID,
+                        top.resultCode != null ? top.resultCode : -1,
+                        top.resultDesc != null ? top.resultDesc : "No description");
+            }
+            if (top.userReference != null) {
+                return new PayHeroCallback(top.userReference,
+                        top.statusFalse
+                                ? PayHeroCallback.RESULT_CANCELLED // treat as cancelled if status=false
+                                : PayHeroCallback.RESULT_SUCCESS,  // treat as success if status=true
+                        "Callback received with User_Reference");
+            }
+            if (wrapped != null && wrapped.checkoutRequestID != null) {
+                return new PayHeroCallback(wrapped.checkoutRequestID,
+                        wrapped.resultCode != null ? wrapped.resultCode : -1,
+                        wrapped.resultDesc != null ? wrapped.resultDesc : "No description");
+            }
+            if (wrapped != null && wrapped.userReference != null) {
+                return new PayHeroCallback(wrapped.userReference,
+                        "Failed".equalsIgnoreCase(wrapped.status)
+                                ? PayHeroCallback.RESULT_CANCELLED
+                                : PayHeroCallback.RESULT_SUCCESS,
+                        wrapped.resultDesc != null ? wrapped.resultDesc : "Callback with response.User_Reference");
+            }
+            return null;
+
+        } catch (IOException e) {
+            throw new InvalidCallbackException("Malformed callback JSON: " + e.getMessage());
+        }
+    }
+
+    private static void readFields(JsonParser parser, Fields fields) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            readField(parser, name, parser.nextToken(), fields);
+        }
+    }
+
+    private static void readField(JsonParser parser, String name, JsonToken value, Fields fields) throws IOException {
+        switch (name) {
+            case "CheckoutRequestID" -> fields.checkoutRequestID = scalar(parser, value);
+            case "User_Reference" -> fields.userReference = scalar(parser, value);
+            case "ResultDesc" -> fields.resultDesc = scalar(parser, value);
+            case "Status" -> fields.status = scalar(parser, value);
+            case "status" -> fields.statusFalse = value == JsonToken.VALUE_FALSE;
+            case "ResultCode" -> fields.resultCode = resultCode(parser, value);
+            default -> parser.skipChildren();
+        }
+    }
+
+    private static String scalar(JsonParser parser, JsonToken value) throws IOException {
+        if (value.isStructStart()) {
+            parser.skipChildren();
+            return null;
+        }
+        return value == JsonToken.VALUE_NULL ? null : parser.getText();
+    }
+
+    private static Integer resultCode(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getIntValue();
+        }
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value == JsonToken.VALUE_STRING) {
+            try {
+                return Integer.parseInt(parser.getText());
+            } catch (NumberFormatException e) {
+                throw new InvalidCallbackException("ResultCode is not a number: " + parser.getText());
+            }
+        }
+        throw new InvalidCallbackException("ResultCode is not a number");
+    }
+}
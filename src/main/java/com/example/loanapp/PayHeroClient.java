@@ -0,0 +1,158 @@
+package com.example.loanapp;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+// =====================================================================
+// PayHero HTTP client
+//
+// One pooled, keep-alive connection manager shared by every STK push,
+// so TLS sessions are reused and a slow PayHero cannot hold a Tomcat
+// thread longer than the configured timeouts. Pool usage is published
+// as httpcomponents.httpclient.pool.* metrics (tag client=payhero), the
+// round trip as payhero.stk.push. Calls go through PayHeroGuard, which
+// refuses them straight away while PayHero is failing or saturated.
+// =====================================================================
+@Component
+public class PayHeroClient implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PayHeroClient.class);
+
+    private final String payHeroChannelId = EnvConfig.dotenv.get("PAYHERO_CHANNEL_ID");
+    private final String callbackUrl = EnvConfig.dotenv.get("PAYHERO_CALLBACK_URL");
+
+    // PayHero uses Basic Auth (base64 of "username:password") on every
+    // request, the credentials never change so the header is built once.
+    private final String authorizationHeader = "Basic " + Base64.getEncoder().encodeToString(
+            (EnvConfig.dotenv.get("PAYHERO_API_USERNAME") + ":" + EnvConfig.dotenv.get("PAYHERO_API_PASSWORD"))
+                    .getBytes(StandardCharsets.UTF_8));
+
+    private final String stkUrl;
+    private final MeterRegistry meterRegistry;
+    private final PayloadSampler payloadSampler;
+    private final PayHeroGuard payHeroGuard;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate restTemplate;
+
+    public PayHeroClient(MeterRegistry meterRegistry,
+                         PayloadSampler payloadSampler,
+                         PayHeroGuard payHeroGuard,
+                         @Value("${payhero.stk-url}") String stkUrl,
+                         @Value("${payhero.http.max-connections}") int maxConnections,
+                         @Value("${payhero.http.connect-timeout-ms}") long connectTimeoutMs,
+                         @Value("${payhero.http.read-timeout-ms}") long readTimeoutMs,
+                         @Value("${payhero.http.pool-acquire-timeout-ms}") long poolAcquireTimeoutMs,
+                         @Value("${payhero.http.keep-alive-seconds}") long keepAliveSeconds) {
+        this.stkUrl = stkUrl;
+        this.meterRegistry = meterRegistry;
+        this.payloadSampler = payloadSampler;
+        this.payHeroGuard = payHeroGuard;
+
+        // Everything goes to a single host, so the per-route limit is the pool size
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .build();
+
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolAcquireTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .setKeepAliveStrategy((response, context) -> TimeValue.ofSeconds(keepAliveSeconds))
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(keepAliveSeconds))
+                .build();
+
+        this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "payhero", Tags.empty())
+                .bindTo(meterRegistry);
+    }
+
+    // Sends a PayHero STK push and returns the raw response body.
+    // Throws PayHeroUnavailableException when PayHeroGuard refuses the call.
+    public String sendStkPush(int amount, String phone, String externalReference, String customerName) {
+        Map<String, Object> payload = stkPayload(amount, phone, externalReference, customerName,
+                Integer.parseInt(payHeroChannelId), callbackUrl);
+
+        if (payloadSampler.sample()) {
+            log.info("PayHero STK Push payload: {}", payload);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.AUTHORIZATION, authorizationHeader);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        // payhero.stk.push{outcome=success|error|rejected}
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            String body = payHeroGuard.call(() ->
+                    restTemplate.postForEntity(stkUrl, new HttpEntity<>(payload, headers), String.class).getBody());
+            outcome = "success";
+            return body;
+        } catch (PayHeroUnavailableException e) {
+            outcome = "rejected";
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("payhero.stk.push")
+                    .description("Outbound PayHero STK push round trip")
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+    }
+
+    static Map<String, Object> stkPayload(int amount, String phone, String externalReference,
+                                          String customerName, int channelId, String callbackUrl) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("amount", amount);
+        payload.put("phone_number", phone);
+        payload.put("channel_id", channelId);
+        payload.put("provider", "m-pesa");
+        payload.put("external_reference", externalReference);
+        payload.put("customer_name", customerName);
+        payload.put("callback_url", callbackUrl);
+        return payload;
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        httpClient.close();
+    }
+}
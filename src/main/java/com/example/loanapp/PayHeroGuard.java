@@ -0,0 +1,118 @@
+package com.example.loanapp;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+// =====================================================================
+// Fail-fast guard around the PayHero STK push
+//
+//   bulkhead         at most payhero.bulkhead.max-concurrent-calls calls
+//                    in flight, extra callers are refused at once
+//                    instead of queueing on Tomcat threads;
+//   circuit breaker  opens when the failure rate or the rate of calls
+//                    slower than slow-call-duration-ms crosses its
+//                    threshold over the sliding window, refuses calls
+//                    for open-seconds, then lets half-open-calls probes
+//                    through to decide whether to close again.
+//
+// 4xx answers are PayHero rejecting the request, not PayHero being
+// down, so they do not count as failures. Refused calls surface as
+// PayHeroUnavailableException with a Retry-After hint.
+//
+// Metrics (name=payhero): resilience4j.circuitbreaker.state,
+// .calls, .failure.rate, .slow.call.rate, .not.permitted.calls and
+// resilience4j.bulkhead.available.concurrent.calls
+// =====================================================================
+@Component
+public class PayHeroGuard {
+
+    private static final Logger log = LoggerFactory.getLogger(PayHeroGuard.class);
+
+    static final String NAME = "payhero";
+
+    // A full bulkhead frees up as soon as one slow call returns
+    private static final long BULKHEAD_RETRY_AFTER_SECONDS = 1;
+
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final Duration openDuration;
+    private volatile long openedAtNanos;
+
+    public PayHeroGuard(MeterRegistry meterRegistry,
+                        @Value("${payhero.circuit.failure-rate-threshold}") float failureRateThreshold,
+                        @Value("${payhero.circuit.slow-call-rate-threshold}") float slowCallRateThreshold,
+                        @Value("${payhero.circuit.slow-call-duration-ms}") long slowCallDurationMs,
+                        @Value("${payhero.circuit.sliding-window-size}") int slidingWindowSize,
+                        @Value("${payhero.circuit.minimum-calls}") int minimumCalls,
+                        @Value("${payhero.circuit.open-seconds}") long openSeconds,
+                        @Value("${payhero.circuit.half-open-calls}") int halfOpenCalls,
+                        @Value("${payhero.bulkhead.max-concurrent-calls}") int maxConcurrentCalls) {
+        this.openDuration = Duration.ofSeconds(openSeconds);
+
+        CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(minimumCalls)
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallRateThreshold(slowCallRateThreshold)
+                .slowCallDurationThreshold(Duration.ofMillis(slowCallDurationMs))
+                .waitDurationInOpenState(openDuration)
+                .permittedNumberOfCallsInHalfOpenState(halfOpenCalls)
+                .ignoreExceptions(HttpClientErrorException.class)
+                .build());
+        BulkheadRegistry bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+
+        this.circuitBreaker = circuitBreakers.circuitBreaker(NAME);
+        this.bulkhead = bulkheads.bulkhead(NAME);
+
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            if (event.getStateTransition().getToState() == CircuitBreaker.State.OPEN) {
+                openedAtNanos = System.nanoTime();
+            }
+            log.warn("PayHero circuit breaker {}", event.getStateTransition());
+        });
+
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakers).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheads).bindTo(meterRegistry);
+    }
+
+    public <T> T call(Supplier<T> call) {
+        try {
+            return Bulkhead.decorateSupplier(bulkhead, CircuitBreaker.decorateSupplier(circuitBreaker, call)).get();
+        } catch (CallNotPermittedException e) {
+            throw new PayHeroUnavailableException("PayHero is unavailable, circuit open", openRetryAfterSeconds());
+        } catch (BulkheadFullException e) {
+            throw new PayHeroUnavailableException("Too many PayHero requests in flight", BULKHEAD_RETRY_AFTER_SECONDS);
+        }
+    }
+
+    public CircuitBreaker.State state() {
+        return circuitBreaker.getState();
+    }
+
+    // Time left until the breaker lets probes through again
+    private long openRetryAfterSeconds() {
+        long left = openDuration.minusNanos(System.nanoTime() - openedAtNanos).toSeconds();
+        return Math.max(1, left);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.loanapp;
+
+// Thrown by PayHeroClient instead of calling PayHero while its circuit
+// breaker is open or every bulkhead slot is taken. The STK push endpoint
+// turns it into a 503 with a Retry-After header.
+public class PayHeroUnavailableException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public PayHeroUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
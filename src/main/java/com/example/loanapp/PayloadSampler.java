@@ -0,0 +1,49 @@
+package com.example.loanapp;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// =====================================================================
+// Decides whether a full PayHero payload is written to the log.
+//
+// A request is sampled with probability logging.payload.sample-rate,
+// and never more than logging.payload.max-per-second times a second,
+// so payload logging stays bounded however much traffic comes in.
+// Everything else is logged as a one-line event with its ids.
+// =====================================================================
+@Component
+public class PayloadSampler {
+
+    private final double sampleRate;
+    private final int maxPerSecond;
+
+    // current second << 20 | payloads logged in that second
+    private final AtomicLong window = new AtomicLong();
+
+    public PayloadSampler(@Value("${logging.payload.sample-rate}") double sampleRate,
+                          @Value("${logging.payload.max-per-second}") int maxPerSecond) {
+        this.sampleRate = sampleRate;
+        this.maxPerSecond = Math.min(maxPerSecond, (1 << 20) - 1);
+    }
+
+    public boolean sample() {
+        if (sampleRate <= 0 || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return false;
+        }
+
+        long second = System.currentTimeMillis() / 1000;
+        while (true) {
+            long current = window.get();
+            long count = current >>> 20 == second ? current & 0xFFFFF : 0;
+            if (count >= maxPerSecond) {
+                return false;
+            }
+            if (window.compareAndSet(current, second << 20 | (count + 1))) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.loanapp;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// =====================================================================
+// Business metrics for the payment flow (scraped at /actuator/prometheus)
+//
+//   payhero.callback{status}           callback handling time, by HTTP status
+//   payhero.callback.result{code}      callbacks per PayHero ResultCode
+//   payhero.stk.pending                STK pushes sent and not yet settled
+//
+// The outbound call is timed in PayHeroClient (payhero.stk.push) and
+// repository calls by Spring Boot (spring.data.repository.invocations).
+// =====================================================================
+@Component
+public class PaymentMetrics {
+
+    // An STK prompt on the phone expires long before this
+    private static final Duration PENDING_TTL = Duration.ofMinutes(10);
+
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, Boolean> pendingStkPushes = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(PENDING_TTL)
+            .build();
+
+    public PaymentMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("payhero.stk.pending", pendingStkPushes, cache -> {
+                    cache.cleanUp();
+                    return cache.estimatedSize();
+                })
+                .description("STK pushes sent and waiting for a callback")
+                .register(meterRegistry);
+    }
+
+    public Timer.Sample startCallback() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void stopCallback(Timer.Sample sample, int httpStatus) {
+        sample.stop(Timer.builder("payhero.callback")
+                .description("PayHero callback handling time")
+                .tag("status", String.valueOf(httpStatus))
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    public void callbackResult(PayHeroCallback callback) {
+        Counter.builder("payhero.callback.result")
+                .description("PayHero callbacks by ResultCode")
+                .tag("code", String.valueOf(callback.resultCode()))
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void stkPushSent(String checkoutRequestID) {
+        pendingStkPushes.put(checkoutRequestID, Boolean.TRUE);
+    }
+
+    public void stkPushSettled(String checkoutRequestID) {
+        pendingStkPushes.invalidate(checkoutRequestID);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.loanapp;
+
+// Last known payment state of an STK push.
+// status:     pending, success, cancelled, failed (PayHero's view)
+// loanStatus: the LoanApplication status returned to the frontend
+public record PaymentStatus(String status, String loanStatus, String resultDesc, long timestamp) {
+
+    public PaymentStatus(String status, String loanStatus, String resultDesc) {
+        this(status, loanStatus, resultDesc, System.currentTimeMillis());
+    }
+
+    public boolean isPending() {
+        return "pending".equals(status);
+    }
+
+    static PaymentStatus fromLoan(LoanApplication loan) {
+        String loanStatus = loan.getStatus();
+        String status = switch (loanStatus == null ? "" : loanStatus) {
+            case "PAID" -> "success";
+            case "CANCELLED" -> "cancelled";
+            case "FAILED" -> "failed";
+            default -> "pending";
+        };
+        return new PaymentStatus(status, loanStatus, "Loaded from database");
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.loanapp;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// =====================================================================
+// Payment status cache, keyed by CheckoutRequestID
+//
+// Filled when an STK push is sent and on every callback, read first by
+// the status polling endpoint. Bounded in size; pending entries expire
+// quickly so another instance's callback is picked up from the database,
+// settled ones (PAID/CANCELLED/FAILED) are kept longer.
+// Hit/miss/eviction stats: /actuator/metrics/cache.gets?tag=cache:payment-status
+// =====================================================================
+@Component
+public class PaymentStatusCache {
+
+    private final Cache<String, PaymentStatus> cache;
+
+    public PaymentStatusCache(MeterRegistry meterRegistry,
+                              @Value("${payment-status.cache.max-size}") long maxSize,
+                              @Value("${payment-status.cache.pending-ttl-seconds}") long pendingTtlSeconds,
+                              @Value("${payment-status.cache.settled-ttl-seconds}") long settledTtlSeconds) {
+        long pendingTtl = Duration.ofSeconds(pendingTtlSeconds).toNanos();
+        long settledTtl = Duration.ofSeconds(settledTtlSeconds).toNanos();
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, PaymentStatus>() {
+                    @Override
+                    public long expireAfterCreate(String key, PaymentStatus value, long currentTime) {
+                        return value.isPending() ? pendingTtl : settledTtl;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, PaymentStatus value, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, PaymentStatus value, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "payment-status");
+    }
+
+    public PaymentStatus get(String checkoutRequestID) {
+        return cache.getIfPresent(checkoutRequestID);
+    }
+
+    public void put(String checkoutRequestID, PaymentStatus status) {
+        cache.put(checkoutRequestID, status);
+    }
+
+    public void remove(String checkoutRequestID) {
+        cache.invalidate(checkoutRequestID);
+    }
+
+    public void removeAll(Iterable<String> checkoutRequestIDs) {
+        cache.invalidateAll(checkoutRequestIDs);
+    }
+}
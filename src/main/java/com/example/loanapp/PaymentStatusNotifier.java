@@ -0,0 +1,94 @@
+package com.example.loanapp;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// =====================================================================
+// Wakes up clients parked on a payment status (long-poll or SSE).
+//
+// Listeners are registered per CheckoutRequestID and called once, when
+// mpesaCallback publishes a settled status. Callers must write the new
+// status to PaymentStatusCache before publishing and re-check the cache
+// after subscribing, so a callback racing a subscription is never lost.
+//
+// In-process only: a callback handled by another instance wakes nobody
+// here. Such a waiter sits out its timeout and then answers with the
+// status read from the database, which is correct but late. Like
+// LoanStats, this needs a single instance (or sticky routing of the
+// callback and the waiter) until wake-ups fan out through the database
+// or a broker.
+// =====================================================================
+@Component
+public class PaymentStatusNotifier {
+
+    // Called at most once: by publish or handed back by the unsubscribe
+    // handle, whichever flips the flag first
+    private static final class Listener {
+        final Consumer<PaymentStatus> consumer;
+        final AtomicBoolean done = new AtomicBoolean();
+
+        Listener(Consumer<PaymentStatus> consumer) {
+            this.consumer = consumer;
+        }
+    }
+
+    // Sets are only changed inside compute on their key; publish takes the
+    // whole set out of the map first, so nothing is added to a set it walks
+    private final Map<String, Set<Listener>> listeners = new ConcurrentHashMap<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public PaymentStatusNotifier(MeterRegistry meterRegistry) {
+        Gauge.builder("payment.status.waiters", waiting, AtomicInteger::get)
+                .description("Clients parked on a payment status")
+                .register(meterRegistry);
+    }
+
+    // Returns a handle that removes the listener again (on timeout or disconnect)
+    public Runnable subscribe(String checkoutRequestID, Consumer<PaymentStatus> listener) {
+        Listener entry = new Listener(listener);
+        waiting.incrementAndGet();
+        listeners.compute(checkoutRequestID, (id, set) -> {
+            Set<Listener> target = set != null ? set : ConcurrentHashMap.newKeySet();
+            target.add(entry);
+            return target;
+        });
+
+        return () -> {
+            if (entry.done.compareAndSet(false, true)) {
+                waiting.decrementAndGet();
+                listeners.computeIfPresent(checkoutRequestID, (id, set) -> {
+                    set.remove(entry);
+                    return set.isEmpty() ? null : set;
+                });
+            }
+        };
+    }
+
+    public void publish(String checkoutRequestID, PaymentStatus status) {
+        if (status.isPending()) {
+            return;
+        }
+        Set<Listener> set = listeners.remove(checkoutRequestID);
+        if (set == null) {
+            return;
+        }
+        for (Listener entry : set) {
+            if (entry.done.compareAndSet(false, true)) {
+                waiting.decrementAndGet();
+                entry.consumer.accept(status);
+            }
+        }
+    }
+
+    int waiting() {
+        return waiting.get();
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.loanapp;
+
+import org.springframework.stereotype.Component;
+
+// =====================================================================
+// Publishes the status a PayHero callback settled, once its write has
+// committed: cached in PaymentStatusCache (before the waiters are woken,
+// see PaymentStatusNotifier) and pushed to the clients parked on
+// /mpesa/status/{id}/wait and /events. Always keyed by the loan's
+// CheckoutRequestID, which is what those clients wait on, never by a
+// User_Reference. Used by the synchronous callback path and by the
+// CallbackIngestor worker.
+// =====================================================================
+@Component
+public class PaymentStatusPublisher {
+
+    private final PaymentStatusCache paymentStatusCache;
+    private final PaymentStatusNotifier paymentStatusNotifier;
+    private final PaymentMetrics paymentMetrics;
+
+    public PaymentStatusPublisher(PaymentStatusCache paymentStatusCache,
+                                  PaymentStatusNotifier paymentStatusNotifier,
+                                  PaymentMetrics paymentMetrics) {
+        this.paymentStatusCache = paymentStatusCache;
+        this.paymentStatusNotifier = paymentStatusNotifier;
+        this.paymentMetrics = paymentMetrics;
+    }
+
+    public void publish(String checkoutRequestID, PayHeroCallback callback) {
+        PaymentStatus status = new PaymentStatus(
+                callback.paymentStatus(), callback.loanStatus(), callback.resultDesc());
+        paymentStatusCache.put(checkoutRequestID, status);
+        paymentStatusNotifier.publish(checkoutRequestID, status);
+        paymentMetrics.stkPushSettled(checkoutRequestID);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.loanapp;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+// =====================================================================
+// Read/write datasource routing
+//
+// Only active when app.datasource.replica.url is set (env:
+// APP_DATASOURCE_REPLICA_URL); otherwise Spring Boot's single
+// datasource is used as before. Transactions marked read-only
+// (@Transactional(readOnly = true), readOnlyTx in the controller) run
+// on the replica, everything else on the primary.
+//
+// The router sits behind a LazyConnectionDataSourceProxy: JPA asks for
+// a connection while beginning the transaction, before the read-only
+// flag is visible, so the real connection is only picked on first use.
+// A connection stays with its EntityManager, so routing per transaction
+// relies on spring.jpa.open-in-view=false (no EntityManager per request).
+// =====================================================================
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replica.url")
+public class ReadReplicaConfig {
+
+    private enum Route { PRIMARY, REPLICA }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${app.datasource.replica.url}") String url,
+                                              @Value("${app.datasource.replica.username:}") String username,
+                                              @Value("${app.datasource.replica.password:}") String password,
+                                              @Value("${app.datasource.replica.maximum-pool-size:10}") int maxPoolSize) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username.isEmpty() ? properties.determineUsername() : username);
+        dataSource.setPassword(password.isEmpty() ? properties.determinePassword() : password);
+        dataSource.setDriverClassName(properties.determineDriverClassName());
+        dataSource.setMaximumPoolSize(maxPoolSize);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica) {
+        AbstractRoutingDataSource router = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                        ? Route.REPLICA
+                        : Route.PRIMARY;
+            }
+        };
+        router.setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        router.setDefaultTargetDataSource(primary);
+        router.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(router);
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.loanapp;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// =====================================================================
+// Admission control for POST /stk-push
+//
+// Token buckets per normalized phone, per trackingId and one global
+// bucket, checked in that order before the endpoint touches the
+// database or PayHero. A refused request gives back the tokens the
+// earlier buckets already took, so a busy global bucket does not eat
+// into a customer's own quota. Each bucket is a single AtomicLong updated by
+// CAS (no locks); the global bucket is split into stripes so busy
+// threads do not all spin on one counter.
+//
+// Per-key buckets live in a bounded Caffeine cache that drops a bucket
+// once it has been idle long enough to be full again, so memory stays
+// bounded however many phone numbers come and go.
+//
+// Metric: stk.push.rate.limited{scope=phone|trackingId|global}
+// =====================================================================
+@Component
+public class StkPushRateLimiter {
+
+    public static final String SCOPE_PHONE = "phone";
+    public static final String SCOPE_TRACKING_ID = "trackingId";
+    public static final String SCOPE_GLOBAL = "global";
+
+    private static final long ORIGIN_NANOS = System.nanoTime();
+
+    // Allowed, or refused by the bucket named in scope
+    public record Decision(boolean allowed, String scope, long retryAfterSeconds) {
+
+        static final Decision ALLOWED = new Decision(true, null, 0);
+    }
+
+    private final Limit phoneLimit;
+    private final Limit trackingIdLimit;
+    private final Cache<String, TokenBucket> phoneBuckets;
+    private final Cache<String, TokenBucket> trackingIdBuckets;
+    private final TokenBucket[] globalStripes;
+    private final MeterRegistry meterRegistry;
+
+    private record Limit(long capacity, double refillPerSecond) {
+
+        TokenBucket newBucket() {
+            return new TokenBucket(capacity, refillPerSecond, now());
+        }
+
+        // After this long without use a bucket is full again, forgetting it changes nothing
+        Duration timeToFull() {
+            return Duration.ofMillis((long) Math.ceil(capacity * 1000 / refillPerSecond) + 1);
+        }
+    }
+
+    public StkPushRateLimiter(MeterRegistry meterRegistry,
+                              @Value("${stk-push.rate-limit.phone.capacity}") long phoneCapacity,
+                              @Value("${stk-push.rate-limit.phone.refill-per-minute}") double phoneRefillPerMinute,
+                              @Value("${stk-push.rate-limit.tracking-id.capacity}") long trackingIdCapacity,
+                              @Value("${stk-push.rate-limit.tracking-id.refill-per-minute}") double trackingIdRefillPerMinute,
+                              @Value("${stk-push.rate-limit.global.capacity}") long globalCapacity,
+                              @Value("${stk-push.rate-limit.global.refill-per-second}") double globalRefillPerSecond,
+                              @Value("${stk-push.rate-limit.max-keys}") long maxKeys) {
+        this.meterRegistry = meterRegistry;
+        this.phoneLimit = new Limit(phoneCapacity, phoneRefillPerMinute / 60);
+        this.trackingIdLimit = new Limit(trackingIdCapacity, trackingIdRefillPerMinute / 60);
+        this.phoneBuckets = buckets(phoneLimit, maxKeys);
+        this.trackingIdBuckets = buckets(trackingIdLimit, maxKeys);
+
+        int stripes = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), globalCapacity));
+        this.globalStripes = new TokenBucket[stripes];
+        for (int i = 0; i < stripes; i++) {
+            // The first stripes take the remainder so the stripes add up to the configured capacity
+            long capacity = globalCapacity / stripes + (i < globalCapacity % stripes ? 1 : 0);
+            globalStripes[i] = new TokenBucket(capacity, globalRefillPerSecond * capacity / globalCapacity, now());
+        }
+    }
+
+    // phone may be null (then only trackingId and the global cap apply)
+    public Decision tryAcquire(String phone, String trackingId) {
+        long now = now();
+        TokenBucket phoneBucket = null;
+        if (phone != null) {
+            phoneBucket = phoneBuckets.get(phone, k -> phoneLimit.newBucket());
+            long wait = phoneBucket.tryAcquire(now);
+            if (wait > 0) {
+                return refused(SCOPE_PHONE, wait);
+            }
+        }
+        TokenBucket trackingIdBucket = null;
+        if (trackingId != null) {
+            trackingIdBucket = trackingIdBuckets.get(trackingId, k -> trackingIdLimit.newBucket());
+            long wait = trackingIdBucket.tryAcquire(now);
+            if (wait > 0) {
+                release(phoneBucket);
+                return refused(SCOPE_TRACKING_ID, wait);
+            }
+        }
+
+        // Start on a random stripe, look at the others only when it is empty
+        int start = ThreadLocalRandom.current().nextInt(globalStripes.length);
+        long shortestWait = Long.MAX_VALUE;
+        for (int i = 0; i < globalStripes.length; i++) {
+            long wait = globalStripes[(start + i) % globalStripes.length].tryAcquire(now);
+            if (wait == 0) {
+                return Decision.ALLOWED;
+            }
+            shortestWait = Math.min(shortestWait, wait);
+        }
+        release(phoneBucket);
+        release(trackingIdBucket);
+        return refused(SCOPE_GLOBAL, shortestWait);
+    }
+
+    private static void release(TokenBucket bucket) {
+        if (bucket != null) {
+            bucket.release();
+        }
+    }
+
+    private Decision refused(String scope, long waitMillis) {
+        Counter.builder("stk.push.rate.limited")
+                .description("STK push requests refused by admission control")
+                .tag("scope", scope)
+                .register(meterRegistry)
+                .increment();
+        return new Decision(false, scope, Math.max(1, TimeUnit.MILLISECONDS.toSeconds(waitMillis + 999)));
+    }
+
+    static long now() {
+        return (System.nanoTime() - ORIGIN_NANOS) / 1_000_000;
+    }
+
+    private static Cache<String, TokenBucket> buckets(Limit limit, long maxKeys) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(limit.timeToFull())
+                .build();
+    }
+
+    // =====================================================================
+    // Lock-free token bucket. The whole state is one long:
+    //   high 40 bits  time of the last refill (ms since ORIGIN_NANOS)
+    //   low 24 bits   tokens left, in thousandths of a token
+    // so a refill and a take happen in a single compareAndSet.
+    // =====================================================================
+    static final class TokenBucket {
+
+        private static final int TOKEN_BITS = 24;
+        private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+        private static final long ONE = 1000;
+
+        private final long capacity;   // thousandths of a token
+        private final double perMilli; // thousandths of a token gained per ms
+        private final AtomicLong state;
+
+        TokenBucket(long capacity, double refillPerSecond, long now) {
+            if (capacity < 1 || capacity * ONE > TOKEN_MASK) {
+                throw new IllegalArgumentException("Bucket capacity must be between 1 and " + TOKEN_MASK / ONE);
+            }
+            if (refillPerSecond <= 0) {
+                throw new IllegalArgumentException("Bucket refill rate must be positive");
+            }
+            this.capacity = capacity * ONE;
+            this.perMilli = refillPerSecond;
+            this.state = new AtomicLong(now << TOKEN_BITS | this.capacity);
+        }
+
+        // Takes one token: 0 when granted, otherwise the ms until one is available
+        long tryAcquire(long now) {
+            while (true) {
+                long current = state.get();
+                long last = current >>> TOKEN_BITS;
+                long tokens = current & TOKEN_MASK;
+
+                long elapsed = Math.max(0, now - last);
+                long gained = (long) (elapsed * perMilli);
+                long available = Math.min(capacity, tokens + gained);
+                // Only move the refill time by what was credited, so slow rates keep their fractions
+                long refilledAt = available == capacity ? Math.max(now, last)
+                        : last + (long) ((available - tokens) / perMilli);
+
+                if (available < ONE) {
+                    return Math.max(1, (long) Math.ceil((ONE - available) / perMilli));
+                }
+                long next = refilledAt << TOKEN_BITS | (available - ONE);
+                if (state.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        // Gives back a token taken by tryAcquire, never above capacity
+        void release() {
+            while (true) {
+                long current = state.get();
+                long tokens = Math.min(capacity, (current & TOKEN_MASK) + ONE);
+                if (state.compareAndSet(current, current & ~TOKEN_MASK | tokens)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.loanapp;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+// =====================================================================
+// Tracking ID generator — LON-C<6 digits>L<7 digits>
+//
+// The 13 digits hold 900000 * 9000000 values. Each ID is built from
+// (seconds since 2025-01-01, node, per-node sequence), so two instances
+// with different node ids never produce the same value. The node id
+// must be set per running instance (loan.tracking-id.node-id, 0-15);
+// startup fails without it. The sequence lives in one AtomicLong
+// together with the second it belongs to. An ID is never handed out
+// before the clock reaches its second: a burst above SEQUENCE_SIZE per
+// second waits for the next one, and the first second used is the one
+// after the generator was created. So a restarted instance cannot
+// reissue what the previous run handed out. The packed value is then
+// multiplied by a constant coprime to the ID space (a bijection), so
+// consecutive IDs do not look consecutive.
+//
+// The space lasts ~15 years from the epoch; trackingId is also unique
+// in the database, which catches any reuse after a clock jump.
+// =====================================================================
+@Component
+public class TrackingIdGenerator {
+
+    static final int NODE_COUNT = 16;
+    static final int SEQUENCE_SIZE = 1024;
+
+    private static final long EPOCH_SECONDS = 1735689600L; // 2025-01-01T00:00:00Z
+    private static final long HIGH_RANGE = 900_000L;
+    private static final long LOW_RANGE = 9_000_000L;
+    private static final long ID_SPACE = HIGH_RANGE * LOW_RANGE;
+    private static final long SCRAMBLE = 1_000_003L; // prime, shares no factor with ID_SPACE
+
+    private final int nodeId;
+    private final LongSupplier clockMillis;
+    private final LongConsumer sleepMillis;
+
+    // seconds-since-epoch * SEQUENCE_SIZE + sequence
+    private final AtomicLong state;
+
+    @Autowired
+    public TrackingIdGenerator(@Value("${loan.tracking-id.node-id}") int nodeId) {
+        this(nodeId, System::currentTimeMillis, TrackingIdGenerator::sleep);
+    }
+
+    TrackingIdGenerator(int nodeId, LongSupplier clockMillis, LongConsumer sleepMillis) {
+        if (nodeId < 0 || nodeId >= NODE_COUNT) {
+            throw new IllegalStateException("loan.tracking-id.node-id (LOAN_TRACKING_ID_NODE_ID) must be set to"
+                    + " 0-" + (NODE_COUNT - 1) + ", different for every running instance; got " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.clockMillis = clockMillis;
+        this.sleepMillis = sleepMillis;
+        this.state = new AtomicLong((currentSecond() + 1) * SEQUENCE_SIZE - 1);
+    }
+
+    public String next() {
+        long now = currentSecond() * SEQUENCE_SIZE;
+        long packed = state.updateAndGet(prev -> Math.max(prev + 1, now));
+
+        long second = packed / SEQUENCE_SIZE;
+        awaitSecond(second);
+        long sequence = packed % SEQUENCE_SIZE;
+        long value = ((second * NODE_COUNT + nodeId) * SEQUENCE_SIZE + sequence) % ID_SPACE;
+        long scrambled = value * SCRAMBLE % ID_SPACE;
+
+        return "LON-C" + (100_000 + scrambled / LOW_RANGE) + "L" + (1_000_000 + scrambled % LOW_RANGE);
+    }
+
+    int getNodeId() {
+        return nodeId;
+    }
+
+    private long currentSecond() {
+        return clockMillis.getAsLong() / 1000 - EPOCH_SECONDS;
+    }
+
+    private void awaitSecond(long second) {
+        long waitMillis;
+        while ((waitMillis = (second + EPOCH_SECONDS) * 1000 - clockMillis.getAsLong()) > 0) {
+            sleepMillis.accept(waitMillis);
+        }
+    }
+
+    // Sleeps through interrupts (the ID is already taken from the sequence)
+    // and restores the flag afterwards
+    private static void sleep(long millis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        boolean interrupted = false;
+        for (long left = millis; left > 0; left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) {
+            try {
+                Thread.sleep(left);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+-- Indexes Hibernate cannot express through entity annotations.
+--
+-- Not run on startup (spring.sql.init.mode defaults to never). Apply it by hand
+-- once per release that changes it, as a role that may create extensions:
+--
+--   psql "$DATABASE_URL" -v ON_ERROR_STOP=1 -f src/main/resources/db/indexes.sql
+--
+-- On an existing database run it before the new build takes traffic (the
+-- sequence step below must precede the first pooled insert); on a fresh
+-- database start the app once so Hibernate creates the table, then run it.
+-- Indexes are built CONCURRENTLY, so writes keep flowing, but the script must
+-- not run inside a transaction block (no psql -1 / --single-transaction).
+-- A concurrent build that fails leaves an INVALID index that IF NOT EXISTS
+-- would skip: drop it and rerun. Every statement must stay idempotent.
+-- Local/dev databases can still apply it on boot with SPRING_SQL_INIT_MODE=always.
+
+-- LoanApplication.id moved from IDENTITY to a pooled sequence (allocationSize 50).
+-- Create the sequence when Hibernate did not (ddl-auto=none/validate) and move it
+-- past ids handed out by the old identity column. Only ever moves it forward.
+-- LoanIdSequenceCheck refuses to start the app until this has run.
+CREATE SEQUENCE IF NOT EXISTS loan_application_seq START WITH 1 INCREMENT BY 50;
+
+SELECT setval('loan_application_seq', max_id + 50)
+    FROM (SELECT COALESCE(MAX(id), 0) AS max_id FROM loan_application) ids
+    WHERE (SELECT CASE WHEN is_called THEN last_value ELSE last_value - 50 END
+           FROM loan_application_seq) < max_id;
+
+-- trackingId is unique (TrackingIdGenerator, LoanApplyBatcher's collision retry,
+-- every lookup by tracking_id). Hibernate adds the constraint only when it creates
+-- the table, so older databases get it here, under the entity's constraint name.
+-- Fails if duplicates already exist; find them first with
+--   SELECT tracking_id FROM loan_application GROUP BY tracking_id HAVING count(*) > 1;
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uk_loan_application_tracking_id
+    ON loan_application (tracking_id);
+
+-- /all/page and /all/stream: newest first on (application_date, id), loans
+-- without a date last, matching LoanApplicationRepository.findPage
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_loan_application_date_id
+    ON loan_application (application_date DESC NULLS LAST, id DESC);
+
+-- Single-column index the entity used to declare; the one above serves its
+-- range scans too, so it only cost writes
+DROP INDEX CONCURRENTLY IF EXISTS idx_loan_application_date;
+
+-- /mpesa-messages: only loans with a saved message, in listing order
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_loan_application_mpesa_message_date
+    ON loan_application (mpesa_message_date DESC, id DESC)
+    WHERE mpesa_message IS NOT NULL;
+
+-- /search (LoanSearch): trigram indexes over the normalized search columns.
+-- Needs the pg_trgm extension (bundled with Postgres, created once by an
+-- owner of the database). The phone expression must stay identical to
+-- LoanSearch.PHONE_EXPR or the planner will not use the index.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_loan_application_name_trgm
+    ON loan_application USING gin (lower(name) gin_trgm_ops);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_loan_application_phone_trgm
+    ON loan_application USING gin ((regexp_replace(regexp_replace(phone, '[^0-9]', '', 'g'), '^(254|0)', '')) gin_trgm_ops);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_loan_application_id_number_trgm
+    ON loan_application USING gin (id_number gin_trgm_ops);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_loan_application_tracking_id_trgm
+    ON loan_application USING gin (tracking_id gin_trgm_ops);
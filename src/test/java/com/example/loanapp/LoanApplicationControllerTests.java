@@ -0,0 +1,164 @@
+package com.example.loanapp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+// Partial-update paths: what they write, and the cases where no row changes.
+// Also the shape of the /mpesa-messages page.
+class LoanApplicationControllerTests {
+
+	private final LoanApplicationRepository repository = mock(LoanApplicationRepository.class);
+	private final LoanStats loanStats = mock(LoanStats.class);
+	private final CallbackDeduplicator callbackDeduplicator = mock(CallbackDeduplicator.class);
+	private final PayHeroCallbackDecoder decoder = mock(PayHeroCallbackDecoder.class);
+	private final CallbackIngestor callbackIngestor = mock(CallbackIngestor.class);
+	private final PaymentStatusPublisher paymentStatusPublisher = mock(PaymentStatusPublisher.class);
+	private final PayHeroClient payHeroClient = mock(PayHeroClient.class);
+	private final StkPushRateLimiter stkPushRateLimiter = mock(StkPushRateLimiter.class);
+	private final PaymentStatusCache paymentStatusCache = mock(PaymentStatusCache.class);
+
+	private LoanApplicationController controller;
+
+	@BeforeEach
+	void setUp() {
+		controller = new LoanApplicationController(mock(PlatformTransactionManager.class));
+		ReflectionTestUtils.setField(controller, "repository", repository);
+		ReflectionTestUtils.setField(controller, "loanStats", loanStats);
+		ReflectionTestUtils.setField(controller, "callbackDeduplicator", callbackDeduplicator);
+		ReflectionTestUtils.setField(controller, "payHeroCallbackDecoder", decoder);
+		ReflectionTestUtils.setField(controller, "callbackIngestor", callbackIngestor);
+		ReflectionTestUtils.setField(controller, "paymentStatusPublisher", paymentStatusPublisher);
+		ReflectionTestUtils.setField(controller, "payHeroClient", payHeroClient);
+		ReflectionTestUtils.setField(controller, "stkPushRateLimiter", stkPushRateLimiter);
+		ReflectionTestUtils.setField(controller, "paymentStatusCache", paymentStatusCache);
+		ReflectionTestUtils.setField(controller, "objectMapper", new ObjectMapper());
+		ReflectionTestUtils.setField(controller, "paymentMetrics", mock(PaymentMetrics.class));
+		ReflectionTestUtils.setField(controller, "payloadSampler", mock(PayloadSampler.class));
+		ReflectionTestUtils.setField(controller, "entityManager", mock(EntityManager.class, RETURNS_DEEP_STUBS));
+	}
+
+	@Test
+	void offerForUnknownTrackingIdIsNotFound() {
+		when(repository.updateOffer("LON-X", 7000, null)).thenReturn(Optional.empty());
+
+		ResponseEntity<Map<String, String>> response =
+				controller.updateLoanOffer(Map.of("trackingId", "LON-X", "loanAmount", 7000));
+
+		assertEquals(404, response.getStatusCode().value());
+		verifyNoInteractions(loanStats);
+	}
+
+	@Test
+	void messageForUnknownTrackingIdIsNotFound() {
+		when(repository.updateMpesaMessage(eq("LON-X"), eq("SMS"), any(Date.class))).thenReturn(Optional.empty());
+
+		ResponseEntity<Map<String, Object>> response =
+				controller.saveMpesaMessage(Map.of("trackingId", "LON-X", "mpesaMessage", "SMS"));
+
+		assertEquals(404, response.getStatusCode().value());
+	}
+
+	@Test
+	void statusAlreadyWrittenByAnotherDeliveryIsANoOp() throws Exception {
+		PayHeroCallback callback = new PayHeroCallback("ws_CO_1", PayHeroCallback.RESULT_SUCCESS, "ok");
+		byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+		when(decoder.decode(body)).thenReturn(callback);
+
+		LoanApplication loan = new LoanApplication();
+		loan.setId(1L);
+		loan.setTrackingId("LON-1");
+		loan.setCheckoutRequestID("ws_CO_1");
+		loan.setStatus("PENDING");
+		when(repository.findByCheckoutRequestID("ws_CO_1")).thenReturn(Optional.of(loan));
+		when(repository.updateStatus("ws_CO_1", callback.loanStatus())).thenReturn(0);
+
+		ResponseEntity<Map<String, Object>> response = controller.mpesaCallback(body);
+
+		assertEquals(200, response.getStatusCode().value());
+		assertEquals("Callback already processed", response.getBody().get("message"));
+		verify(callbackDeduplicator).recordDuplicate(callback);
+		verify(callbackDeduplicator, never()).recordFirst(callback);
+		verifyNoInteractions(loanStats, paymentStatusPublisher);
+	}
+
+	@Test
+	void acceptedStkPushWritesOnlyItsColumns() {
+		StkPushRequest request = new StkPushRequest();
+		request.setTrackingId("LON-1");
+		request.setPhone("0712345678");
+		request.setAmount(50);
+		request.setLoanAmount(7000);
+		request.setVerificationFee(150);
+		when(stkPushRateLimiter.tryAcquire("254712345678", "LON-1")).thenReturn(StkPushRateLimiter.Decision.ALLOWED);
+
+		// A stale copy, as the second-level cache may hand out
+		LoanApplication cached = new LoanApplication();
+		cached.setId(1L);
+		cached.setTrackingId("LON-1");
+		cached.setStatus("NEW");
+		cached.setLoanAmount(1000);
+		when(repository.findByTrackingId("LON-1")).thenReturn(Optional.of(cached));
+		when(payHeroClient.sendStkPush(anyInt(), anyString(), eq("LON-1"), anyString()))
+				.thenReturn("{\"success\":true,\"CheckoutRequestID\":\"ws_CO_1\"}");
+
+		LoanApplicationRepository.StkPushedLoan pushed = mock(LoanApplicationRepository.StkPushedLoan.class);
+		when(pushed.getId()).thenReturn(1L);
+		when(pushed.getStatus()).thenReturn("APPROVED");
+		when(pushed.getNewStatus()).thenReturn("APPROVED");
+		when(pushed.getLoanAmount()).thenReturn(5000);
+		when(pushed.getVerificationFee()).thenReturn(100);
+		when(repository.updateStkPush("LON-1", "ws_CO_1", 7000, 150)).thenReturn(Optional.of(pushed));
+
+		ResponseEntity<Map<String, Object>> response = controller.initiateStkPush(request);
+
+		assertEquals(200, response.getStatusCode().value());
+		verify(repository, never()).save(any());
+		verify(loanStats).changed(new LoanStats.Row("APPROVED", null, null, 5000, 100),
+				new LoanStats.Row("APPROVED", null, null, 7000, 150));
+		verify(paymentStatusCache).put(eq("ws_CO_1"), any(PaymentStatus.class));
+	}
+
+	@Test
+	void mpesaMessagePageSaysWhetherMoreFollow() {
+		MpesaMessageView message = new MpesaMessageView("LON-1", "Jane", "254712345678", "SMS", new Date(), "PAID");
+		when(repository.findMpesaMessages(PageRequest.of(0, 1)))
+				.thenReturn(new SliceImpl<>(List.of(message), PageRequest.of(0, 1), true));
+		when(repository.findMpesaMessages(PageRequest.of(1, 1)))
+				.thenReturn(new SliceImpl<>(List.of(message), PageRequest.of(1, 1), false));
+
+		Map<?, ?> first = (Map<?, ?>) controller.getAllMpesaMessages(0, 1).getBody();
+		assertEquals(List.of(message), first.get("items"));
+		assertEquals(true, first.get("hasMore"));
+		assertEquals(1, first.get("next"));
+
+		Map<?, ?> last = (Map<?, ?>) controller.getAllMpesaMessages(1, 1).getBody();
+		assertEquals(false, last.get("hasMore"));
+		assertNull(last.get("next"));
+	}
+}
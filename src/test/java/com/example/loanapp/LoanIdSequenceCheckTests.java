@@ -0,0 +1,32 @@
+package com.example.loanapp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoanIdSequenceCheckTests {
+
+	@Test
+	void emptyTableIsAlwaysCovered() {
+		assertTrue(LoanIdSequenceCheck.coversExistingIds(1, false, 0));
+	}
+
+	@Test
+	void sequenceCreatedOverAnExistingTableIsBehind() {
+		assertFalse(LoanIdSequenceCheck.coversExistingIds(1, false, 1_234));
+		assertFalse(LoanIdSequenceCheck.coversExistingIds(101, true, 1_234));
+	}
+
+	@Test
+	void sequenceMovedByTheScriptIsAhead() {
+		assertTrue(LoanIdSequenceCheck.coversExistingIds(1_284, true, 1_234));
+		assertTrue(LoanIdSequenceCheck.coversExistingIds(1_234, true, 1_234));
+	}
+
+	@Test
+	void uncalledSequenceHandsOutTheBlockBelowItsValue() {
+		assertFalse(LoanIdSequenceCheck.coversExistingIds(1_250, false, 1_234));
+		assertTrue(LoanIdSequenceCheck.coversExistingIds(1_284, false, 1_234));
+	}
+}
@@ -0,0 +1,47 @@
+package com.example.loanapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LoanPageCursorTests {
+
+	@Test
+	void roundTripsAtMicrosecondPrecision() {
+		LoanPageCursor cursor = new LoanPageCursor(
+				Timestamp.valueOf(LocalDateTime.of(2026, 10, 17, 21, 42, 9, 300_123_000)), 1234);
+
+		assertEquals("2026-10-17T21:42:09.300123_1234", cursor.encode());
+		assertEquals(cursor, LoanPageCursor.decode(cursor.encode()));
+	}
+
+	@Test
+	void loanWithoutDateHasEmptyDate() {
+		LoanApplication loan = new LoanApplication();
+		loan.setId(7L);
+
+		assertEquals("_7", LoanPageCursor.of(loan).encode());
+		assertEquals(new LoanPageCursor(null, 7), LoanPageCursor.decode("_7"));
+	}
+
+	@Test
+	void plainDateOfAFreshlySavedLoanIsAccepted() {
+		LoanApplication loan = new LoanApplication();
+		loan.setId(8L);
+		loan.setApplicationDate(new Date(1_700_000_000_123L));
+
+		assertEquals(new Timestamp(1_700_000_000_123L), LoanPageCursor.of(loan).applicationDate());
+	}
+
+	@Test
+	void rejectsMalformedCursors() {
+		assertThrows(IllegalArgumentException.class, () -> LoanPageCursor.decode("1234"));
+		assertThrows(IllegalArgumentException.class, () -> LoanPageCursor.decode("yesterday_1234"));
+		assertThrows(IllegalArgumentException.class, () -> LoanPageCursor.decode("2026-10-17T21:42:09_x"));
+	}
+}
@@ -0,0 +1,58 @@
+package com.example.loanapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoanStatsTests {
+
+	private static final LocalDate DAY = LocalDate.of(2025, 3, 14);
+
+	@Test
+	void movesLoanBetweenBuckets() {
+		LoanStats stats = new LoanStats(null);
+		LoanStats.Row pending = new LoanStats.Row("PENDING", "Personal", DAY, 5_000, 150);
+		LoanStats.Row paid = new LoanStats.Row("PAID", "Personal", DAY, 5_000, 150);
+
+		stats.added(pending);
+		stats.added(pending);
+		stats.changed(pending, paid);
+
+		List<LoanStats.Bucket> buckets = stats.buckets(null, null);
+		assertEquals(2, buckets.size());
+		for (LoanStats.Bucket bucket : buckets) {
+			assertEquals(1, bucket.count());
+			assertEquals(5_000, bucket.loanAmount());
+			assertEquals(150, bucket.verificationFee());
+		}
+	}
+
+	@Test
+	void dropsEmptyBuckets() {
+		LoanStats stats = new LoanStats(null);
+		LoanStats.Row row = new LoanStats.Row("PENDING", "Business", DAY, 20_000, 300);
+
+		stats.added(row);
+		stats.removed(row);
+
+		assertTrue(stats.buckets(null, null).isEmpty());
+	}
+
+	@Test
+	void filtersOnInclusiveDayRange() {
+		LoanStats stats = new LoanStats(null);
+		stats.added(new LoanStats.Row("PENDING", "Personal", DAY.minusDays(1), 1_000, 100));
+		stats.added(new LoanStats.Row("PENDING", "Personal", DAY, 2_000, 100));
+		stats.added(new LoanStats.Row("PENDING", "Personal", DAY.plusDays(1), 3_000, 100));
+		stats.added(new LoanStats.Row("PENDING", "Personal", null, 4_000, 100));
+
+		List<LoanStats.Bucket> buckets = stats.buckets(DAY, DAY.plusDays(1));
+
+		assertEquals(List.of(DAY.plusDays(1), DAY), buckets.stream().map(LoanStats.Bucket::day).toList());
+		assertEquals(4, stats.buckets(null, null).size());
+	}
+}
@@ -0,0 +1,53 @@
+package com.example.loanapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MpesaMessageParserTests {
+
+	@Test
+	void parsesSentConfirmation() {
+		MpesaMessageParser.Receipt receipt = MpesaMessageParser.parse(
+				"SGH7XK2L9P Confirmed. Ksh1,500.00 sent to KOPESHA LTD for account LON-C123456L9876543"
+						+ " on 14/3/25 at 2:05 PM New M-PESA balance is Ksh2,345.50. Transaction cost, Ksh0.00.");
+
+		assertEquals("SGH7XK2L9P", receipt.receiptCode());
+		assertEquals(150_000L, receipt.amountCents());
+		assertEquals(LocalDateTime.of(2025, 3, 14, 14, 5), receipt.paidAt());
+		assertNull(receipt.phone());
+	}
+
+	@Test
+	void parsesReceivedConfirmationWithPhone() {
+		MpesaMessageParser.Receipt receipt = MpesaMessageParser.parse(
+				"TCE4ABC12X Confirmed. You have received Ksh 150 from JOHN DOE 0712345678 on 1/12/2024 at 12:30AM."
+						+ " New M-PESA balance is Ksh 900.00.");
+
+		assertEquals("TCE4ABC12X", receipt.receiptCode());
+		assertEquals(15_000L, receipt.amountCents());
+		assertEquals(LocalDateTime.of(2024, 12, 1, 0, 30), receipt.paidAt());
+		assertEquals("254712345678", receipt.phone());
+	}
+
+	@Test
+	void leavesMissingFieldsEmpty() {
+		MpesaMessageParser.Receipt receipt = MpesaMessageParser.parse("I have paid, balance is Ksh200 thanks");
+
+		assertNull(receipt.receiptCode());
+		assertNull(receipt.amountCents());
+		assertNull(receipt.paidAt());
+		assertNull(receipt.phone());
+	}
+
+	@Test
+	void normalizesPhonesLikeFormatPhone() {
+		assertEquals("254712345678", MpesaMessageParser.normalizePhone("+254 712 345 678"));
+		assertEquals("254112345678", MpesaMessageParser.normalizePhone("0112345678"));
+		assertEquals("254712345678", MpesaMessageParser.normalizePhone("712345678"));
+		assertNull(MpesaMessageParser.normalizePhone("12345"));
+	}
+}
@@ -0,0 +1,64 @@
+package com.example.loanapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PayHeroCallbackDecoderTests {
+
+	private final PayHeroCallbackDecoder decoder = new PayHeroCallbackDecoder();
+
+	private PayHeroCallback decode(String json) {
+		return decoder.decode(json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void decodesTopLevelCheckoutRequestID() {
+		PayHeroCallback callback = decode("{\"CheckoutRequestID\":\"ws_CO_1\",\"ExternalReference\":\"LON-C1\","
+				+ "\"ResultCode\":1032,\"ResultDesc\":\"Cancelled\",\"Amount\":100}");
+
+		assertEquals(new PayHeroCallback("ws_CO_1", 1032, "Cancelled"), callback);
+		assertEquals("CANCELLED", callback.loanStatus());
+	}
+
+	@Test
+	void decodesUserReference() {
+		assertEquals(new PayHeroCallback("LON-C1", 1032, "Callback received with User_Reference"),
+				decode("{\"status\":false,\"User_Reference\":\"LON-C1\"}"));
+		assertEquals(0, decode("{\"User_Reference\":\"LON-C1\",\"status\":true}").resultCode());
+	}
+
+	@Test
+	void decodesWrappedResponse() {
+		assertEquals(new PayHeroCallback("ws_CO_2", 0, "ok"),
+				decode("{\"status\":true,\"response\":{\"CheckoutRequestID\":\"ws_CO_2\","
+						+ "\"ResultCode\":\"0\",\"ResultDesc\":\"ok\",\"Extra\":{\"a\":[1,2]}}}"));
+		assertEquals(1032, decode("{\"response\":{\"User_Reference\":\"LON-C1\",\"Status\":\"failed\"}}").resultCode());
+	}
+
+	@Test
+	void topLevelCheckoutRequestIDWinsOverWrappedResponse() {
+		assertEquals("ws_CO_top",
+				decode("{\"response\":{\"CheckoutRequestID\":\"ws_CO_in\"},\"CheckoutRequestID\":\"ws_CO_top\"}")
+						.reference());
+	}
+
+	@Test
+	void returnsNullWithoutReference() {
+		assertNull(decode("{\"foo\":1}"));
+		assertNull(decode("{}"));
+	}
+
+	@Test
+	void rejectsMalformedBodies() {
+		assertThrows(PayHeroCallbackDecoder.InvalidCallbackException.class, () -> decode("[1,2]"));
+		assertThrows(PayHeroCallbackDecoder.InvalidCallbackException.class, () -> decode("{\"CheckoutRequestID\":"));
+		assertThrows(PayHeroCallbackDecoder.InvalidCallbackException.class,
+				() -> decode("{\"CheckoutRequestID\":\"x\",\"ResultCode\":\"abc\"}"));
+		assertThrows(PayHeroCallbackDecoder.InvalidCallbackException.class, () -> decoder.decode(new byte[0]));
+	}
+}
@@ -0,0 +1,73 @@
+package com.example.loanapp;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PayHeroGuardTests {
+
+	private static PayHeroGuard guard(int maxConcurrentCalls) {
+		return new PayHeroGuard(new SimpleMeterRegistry(), 50, 100, 60_000, 10, 4, 30, 2, maxConcurrentCalls);
+	}
+
+	@Test
+	void opensOnFailuresAndFailsFast() {
+		PayHeroGuard guard = guard(10);
+		for (int i = 0; i < 4; i++) {
+			assertThrows(ResourceAccessException.class, () -> guard.call(() -> {
+				throw new ResourceAccessException("Read timed out");
+			}));
+		}
+
+		assertEquals(CircuitBreaker.State.OPEN, guard.state());
+		PayHeroUnavailableException e = assertThrows(PayHeroUnavailableException.class,
+				() -> guard.call(() -> "never sent"));
+		assertTrue(e.getRetryAfterSeconds() > 0 && e.getRetryAfterSeconds() <= 30);
+	}
+
+	@Test
+	void clientErrorsDoNotOpenTheCircuit() {
+		PayHeroGuard guard = guard(10);
+		for (int i = 0; i < 10; i++) {
+			assertThrows(HttpClientErrorException.class, () -> guard.call(() -> {
+				throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+			}));
+		}
+
+		assertEquals(CircuitBreaker.State.CLOSED, guard.state());
+	}
+
+	@Test
+	void bulkheadRejectsExtraCalls() throws Exception {
+		PayHeroGuard guard = guard(1);
+		CountDownLatch inCall = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Thread slowCall = new Thread(() -> guard.call(() -> {
+			inCall.countDown();
+			try {
+				return release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		}));
+		slowCall.start();
+		assertTrue(inCall.await(5, TimeUnit.SECONDS));
+
+		PayHeroUnavailableException e = assertThrows(PayHeroUnavailableException.class,
+				() -> guard.call(() -> "second call"));
+		assertEquals(1, e.getRetryAfterSeconds());
+
+		release.countDown();
+		slowCall.join();
+	}
+}
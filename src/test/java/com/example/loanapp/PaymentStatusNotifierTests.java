@@ -0,0 +1,101 @@
+package com.example.loanapp;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PaymentStatusNotifierTests {
+
+	private static final PaymentStatus PAID = new PaymentStatus("success", "PAID", "ok");
+
+	private final PaymentStatusNotifier notifier = new PaymentStatusNotifier(new SimpleMeterRegistry());
+
+	@Test
+	void listenerIsCalledOnceAndCountedOnce() {
+		AtomicInteger calls = new AtomicInteger();
+		Runnable unsubscribe = notifier.subscribe("ws_CO_1", status -> calls.incrementAndGet());
+
+		notifier.publish("ws_CO_1", PAID);
+		notifier.publish("ws_CO_1", PAID);
+		unsubscribe.run();
+
+		assertEquals(1, calls.get());
+		assertEquals(0, notifier.waiting());
+	}
+
+	@Test
+	void unsubscribedListenerIsNotCalled() {
+		AtomicInteger calls = new AtomicInteger();
+		Runnable unsubscribe = notifier.subscribe("ws_CO_1", status -> calls.incrementAndGet());
+
+		unsubscribe.run();
+		unsubscribe.run();
+		notifier.publish("ws_CO_1", PAID);
+
+		assertEquals(0, calls.get());
+		assertEquals(0, notifier.waiting());
+	}
+
+	@Test
+	void waitersReturnToZeroUnderConcurrentPublishes() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		List<Runnable> handles = new ArrayList<>();
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			for (int i = 0; i < 4; i++) {
+				pool.execute(() -> {
+					await(start);
+					for (int n = 0; n < 20_000; n++) {
+						notifier.publish("ws_CO_1", PAID);
+					}
+				});
+			}
+			List<Future<List<Runnable>>> subscribers = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				subscribers.add(pool.submit(() -> {
+					await(start);
+					List<Runnable> mine = new ArrayList<>();
+					for (int n = 0; n < 20_000; n++) {
+						Runnable unsubscribe = notifier.subscribe("ws_CO_1", status -> { });
+						if (n % 2 == 0) {
+							unsubscribe.run();
+						} else {
+							mine.add(unsubscribe);
+						}
+					}
+					return mine;
+				}));
+			}
+			start.countDown();
+			for (var subscriber : subscribers) {
+				handles.addAll(subscriber.get(30, TimeUnit.SECONDS));
+			}
+		} finally {
+			pool.shutdown();
+			assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+		}
+
+		// Every client eventually times out or disconnects
+		handles.forEach(Runnable::run);
+		assertEquals(0, notifier.waiting());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
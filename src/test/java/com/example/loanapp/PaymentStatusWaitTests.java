@@ -0,0 +1,83 @@
+package com.example.loanapp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Parked /wait requests must not keep a pooled connection. Needs a
+// database, like LoanAppApplicationTests.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.hikari.maximum-pool-size=" + PaymentStatusWaitTests.POOL_SIZE,
+		"spring.datasource.hikari.connection-timeout=1000"})
+class PaymentStatusWaitTests {
+
+	static final int POOL_SIZE = 2;
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private LoanApplicationRepository repository;
+
+	private final HttpClient client = HttpClient.newHttpClient();
+	private final List<Long> ids = new ArrayList<>();
+
+	@AfterEach
+	void deleteLoans() {
+		repository.deleteAllById(ids);
+	}
+
+	@Test
+	void moreWaitersThanConnectionsLeaveThePoolUsable() throws Exception {
+		String prefix = "ws_CO_WAIT_" + System.nanoTime() + "_";
+		List<CompletableFuture<HttpResponse<String>>> waiters = new ArrayList<>();
+		for (int i = 0; i < POOL_SIZE * 3; i++) {
+			pendingLoan(prefix + i);
+			waiters.add(client.sendAsync(get("/mpesa/status/" + prefix + i + "/wait?timeoutSeconds=4"),
+					HttpResponse.BodyHandlers.ofString()));
+		}
+		TimeUnit.SECONDS.sleep(1);
+
+		// Every waiter is still parked and the pool still serves other requests
+		pendingLoan(prefix + "probe");
+		HttpResponse<String> probe = client.send(get("/mpesa/status/" + prefix + "probe"),
+				HttpResponse.BodyHandlers.ofString());
+		assertEquals(200, probe.statusCode());
+		assertTrue(probe.body().contains("PENDING"), probe.body());
+		assertFalse(waiters.stream().anyMatch(CompletableFuture::isDone));
+
+		for (var waiter : waiters) {
+			HttpResponse<String> response = waiter.get(10, TimeUnit.SECONDS);
+			assertEquals(200, response.statusCode());
+			assertTrue(response.body().contains("PENDING"), response.body());
+		}
+	}
+
+	private void pendingLoan(String checkoutRequestID) {
+		LoanApplication loan = new LoanApplication();
+		loan.setName("Wait Test");
+		loan.setStatus("PENDING");
+		loan.setTrackingId(checkoutRequestID);
+		loan.setCheckoutRequestID(checkoutRequestID);
+		ids.add(repository.save(loan).getId());
+	}
+
+	private HttpRequest get(String path) {
+		return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/loans" + path)).GET().build();
+	}
+}
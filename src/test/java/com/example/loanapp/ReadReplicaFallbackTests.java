@@ -0,0 +1,74 @@
+package com.example.loanapp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// A status lookup the replica cannot answer yet must reach the primary.
+// The "replica" is an empty copy of loan_application in its own schema,
+// i.e. one that has not caught up at all. Needs a database, like
+// LoanAppApplicationTests.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"app.datasource.replica.url=${spring.datasource.url}?currentSchema=" + ReadReplicaFallbackTests.REPLICA_SCHEMA,
+		"app.datasource.replica.maximum-pool-size=2"})
+class ReadReplicaFallbackTests {
+
+	static final String REPLICA_SCHEMA = "lagging_replica";
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private LoanApplicationRepository repository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private final HttpClient client = HttpClient.newHttpClient();
+	private Long id;
+
+	@BeforeEach
+	void createReplica() {
+		jdbcTemplate.execute("CREATE SCHEMA IF NOT EXISTS " + REPLICA_SCHEMA);
+		jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + REPLICA_SCHEMA
+				+ ".loan_application (LIKE public.loan_application INCLUDING ALL)");
+	}
+
+	@AfterEach
+	void dropReplica() {
+		if (id != null) {
+			repository.deleteById(id);
+		}
+		jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + REPLICA_SCHEMA + " CASCADE");
+	}
+
+	@Test
+	void statusMissingOnTheReplicaIsReadFromThePrimary() throws Exception {
+		String checkoutRequestID = "ws_CO_LAG_" + System.nanoTime();
+		LoanApplication loan = new LoanApplication();
+		loan.setName("Replica Test");
+		loan.setStatus("PAID");
+		loan.setTrackingId(checkoutRequestID);
+		loan.setCheckoutRequestID(checkoutRequestID);
+		id = repository.save(loan).getId();
+
+		HttpResponse<String> response = client.send(HttpRequest.newBuilder(
+						URI.create("http://localhost:" + port + "/api/loans/mpesa/status/" + checkoutRequestID)).GET().build(),
+				HttpResponse.BodyHandlers.ofString());
+
+		assertEquals(200, response.statusCode());
+		assertTrue(response.body().contains("PAID"), response.body());
+	}
+}
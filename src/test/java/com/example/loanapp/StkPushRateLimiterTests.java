@@ -0,0 +1,95 @@
+package com.example.loanapp;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StkPushRateLimiterTests {
+
+	@Test
+	void bucketRefillsAtConfiguredRate() {
+		// 2 tokens, 1 token per second
+		StkPushRateLimiter.TokenBucket bucket = new StkPushRateLimiter.TokenBucket(2, 1, 0);
+
+		assertEquals(0, bucket.tryAcquire(0));
+		assertEquals(0, bucket.tryAcquire(0));
+		assertEquals(1000, bucket.tryAcquire(0));
+		assertEquals(400, bucket.tryAcquire(600));
+		assertEquals(0, bucket.tryAcquire(1000));
+	}
+
+	@Test
+	void slowRefillKeepsFractions() {
+		// 1 token per minute, polled every 10 ms
+		StkPushRateLimiter.TokenBucket bucket = new StkPushRateLimiter.TokenBucket(1, 1 / 60.0, 0);
+		assertEquals(0, bucket.tryAcquire(0));
+
+		long grantedAt = -1;
+		for (long now = 10; now <= 61_000 && grantedAt < 0; now += 10) {
+			if (bucket.tryAcquire(now) == 0) {
+				grantedAt = now;
+			}
+		}
+		assertTrue(grantedAt >= 59_990 && grantedAt <= 60_010, "granted at " + grantedAt);
+	}
+
+	@Test
+	void concurrentTakersNeverExceedCapacity() {
+		StkPushRateLimiter.TokenBucket bucket = new StkPushRateLimiter.TokenBucket(1_000, 0.001, 0);
+		AtomicInteger granted = new AtomicInteger();
+
+		IntStream.range(0, 20_000).parallel().forEach(i -> {
+			if (bucket.tryAcquire(0) == 0) {
+				granted.incrementAndGet();
+			}
+		});
+
+		assertEquals(1_000, granted.get());
+	}
+
+	@Test
+	void limitsPhoneBeforeTrackingIdAndGlobal() {
+		StkPushRateLimiter limiter = new StkPushRateLimiter(new SimpleMeterRegistry(), 2, 1, 10, 1, 1_000, 100, 1_000);
+
+		assertTrue(limiter.tryAcquire("254712345678", "LON-1").allowed());
+		assertTrue(limiter.tryAcquire("254712345678", "LON-2").allowed());
+
+		StkPushRateLimiter.Decision third = limiter.tryAcquire("254712345678", "LON-3");
+		assertFalse(third.allowed());
+		assertEquals(StkPushRateLimiter.SCOPE_PHONE, third.scope());
+		assertTrue(third.retryAfterSeconds() > 0);
+
+		assertTrue(limiter.tryAcquire("254798765432", "LON-3").allowed());
+	}
+
+	@Test
+	void globalRefusalDoesNotUseCustomerQuota() {
+		// Two tokens per phone and per trackingId, one global token that refills only after an hour
+		StkPushRateLimiter limiter = new StkPushRateLimiter(new SimpleMeterRegistry(), 2, 1, 2, 1, 1, 1 / 3600.0, 1_000);
+		assertTrue(limiter.tryAcquire("254700000000", "LON-0").allowed());
+
+		// Without the refunds the third try would be refused by the phone, then the trackingId bucket
+		for (int i = 0; i < 5; i++) {
+			assertEquals(StkPushRateLimiter.SCOPE_GLOBAL, limiter.tryAcquire("254712345678", "LON-1").scope());
+			assertEquals(StkPushRateLimiter.SCOPE_GLOBAL, limiter.tryAcquire("25472000000" + i, "LON-2").scope());
+		}
+	}
+
+	@Test
+	void releaseNeverExceedsCapacity() {
+		StkPushRateLimiter.TokenBucket bucket = new StkPushRateLimiter.TokenBucket(2, 1 / 3600.0, 0);
+
+		assertEquals(0, bucket.tryAcquire(0));
+		bucket.release();
+		bucket.release();
+		assertEquals(0, bucket.tryAcquire(0));
+		assertEquals(0, bucket.tryAcquire(0));
+		assertTrue(bucket.tryAcquire(0) > 0);
+	}
+}
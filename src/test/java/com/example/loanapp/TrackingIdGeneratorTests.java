@@ -0,0 +1,86 @@
+package com.example.loanapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrackingIdGeneratorTests {
+
+	private static final long NOW = 1_760_000_000_000L;
+
+	// Waiting moves the clock instead of sleeping
+	private final AtomicLong clock = new AtomicLong(NOW);
+
+	private TrackingIdGenerator generator(int node) {
+		return new TrackingIdGenerator(node, clock::get, clock::addAndGet);
+	}
+
+	@Test
+	void keepsTrackingIdFormat() {
+		String id = generator(3).next();
+		assertTrue(id.matches("LON-C\\d{6}L\\d{7}"), id);
+	}
+
+	@Test
+	void requiresAConfiguredNodeId() {
+		assertThrows(IllegalStateException.class, () -> new TrackingIdGenerator(-1));
+		assertThrows(IllegalStateException.class, () -> new TrackingIdGenerator(TrackingIdGenerator.NODE_COUNT));
+	}
+
+	@Test
+	void concurrentIdsAreUnique() {
+		TrackingIdGenerator generator = generator(1);
+		Set<String> ids = ConcurrentHashMap.newKeySet();
+
+		IntStream.range(0, 50_000).parallel().forEach(i -> ids.add(generator.next()));
+
+		assertEquals(50_000, ids.size());
+	}
+
+	@Test
+	void burstWaitsForTheNextSecond() {
+		TrackingIdGenerator generator = generator(1);
+		for (int i = 0; i < TrackingIdGenerator.SEQUENCE_SIZE * 3; i++) {
+			generator.next();
+		}
+
+		// First second after creation, then two more for the overflow
+		assertEquals(NOW / 1000 + 3, clock.get() / 1000);
+	}
+
+	@Test
+	void restartDoesNotReissueIds() {
+		Set<String> ids = new HashSet<>();
+		TrackingIdGenerator first = generator(1);
+		for (int i = 0; i < TrackingIdGenerator.SEQUENCE_SIZE * 2; i++) {
+			ids.add(first.next());
+		}
+
+		// Restarted within the same second as the last ID handed out
+		TrackingIdGenerator restarted = generator(1);
+		for (int i = 0; i < TrackingIdGenerator.SEQUENCE_SIZE * 2; i++) {
+			assertTrue(ids.add(restarted.next()));
+		}
+	}
+
+	@Test
+	void nodesDoNotCollide() {
+		Set<String> ids = ConcurrentHashMap.newKeySet();
+		for (int node = 0; node < TrackingIdGenerator.NODE_COUNT; node++) {
+			TrackingIdGenerator generator = generator(node);
+			for (int i = 0; i < 2_000; i++) {
+				ids.add(generator.next());
+			}
+		}
+
+		assertEquals(TrackingIdGenerator.NODE_COUNT * 2_000, ids.size());
+	}
+}